@@ -0,0 +1,142 @@
+//AnalysisPanel.java
+
+
+import java.awt.*;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Side panel for Analyze mode: the engine's best lines for the position on
+ * the board, each with its score and depth, refreshed as the background
+ * search deepens. {@link EvalBar} shows the top score beside the board.
+ */
+public class AnalysisPanel extends JPanel {
+    private static final int MAX_LINE_MOVES = 10;
+    private static final String[] COLUMNS = {"Eval", "Depth", "Line"};
+
+    private final DefaultTableModel model;
+    private final JLabel statusLabel = new JLabel(" ");
+
+    AnalysisPanel() {
+        super(new BorderLayout(0, 5));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setPreferredSize(new Dimension(260, 0));
+
+        JLabel title = new JLabel("Analysis");
+        title.setFont(title.getFont().deriveFont(Font.BOLD));
+        add(title, BorderLayout.NORTH);
+
+        model = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        table.setRowSelectionAllowed(false);
+        table.getColumnModel().getColumn(0).setPreferredWidth(50);
+        table.getColumnModel().getColumn(1).setPreferredWidth(40);
+        table.getColumnModel().getColumn(2).setPreferredWidth(200);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows an analysis from the AnalysisWorker. Must be called on the EDT.
+     */
+    public void showAnalysis(AnalysisWorker.Analysis analysis) {
+        model.setRowCount(0);
+        if (analysis.gameOver) {
+            statusLabel.setText("Game over: " + analysis.getResult());
+            return;
+        }
+        for (SearchEngine.Result line : analysis.lines) {
+            model.addRow(new Object[] {SearchEngine.scoreString(analysis.getScore(line)), line.depth,
+                toSan(analysis.snapshot.toBoard(), line.pv)});
+        }
+        SearchEngine.Result best = analysis.search;
+        statusLabel.setText(best == null ? "Searching..."
+            : "Depth " + best.depth + ", " + best.getNodesPerSecond() / 1000 + " kN/s");
+    }
+
+    /**
+     * Empties the panel, e.g. when Analyze mode is switched off.
+     */
+    public void clear() {
+        model.setRowCount(0);
+        statusLabel.setText(" ");
+    }
+
+    // The first moves of a line in SAN, played out on the given board
+    private static String toSan(GameLogic.Board board, int[] pv) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(MAX_LINE_MOVES, pv.length); i++) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(Pgn.toSan(board, pv[i]));
+            board.doMove(pv[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Vertical bar beside the board: White's share grows from the bottom with
+     * White's advantage, along a curve that flattens out by about five pawns.
+     * A mate fills it completely.
+     */
+    public static class EvalBar extends JComponent {
+        private static final Color WHITE_SIDE = new Color(240, 240, 240);
+        private static final Color BLACK_SIDE = new Color(50, 50, 50);
+        private static final double PAWNS_SCALE = 250.0; // centipawns per unit of the logistic curve
+        private static final Font SCORE_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 9);
+
+        private int score; // centipawns, White's point of view
+        private String text = SearchEngine.scoreString(0);
+
+        EvalBar() {
+            setPreferredSize(new Dimension(24, 0));
+        }
+
+        /**
+         * @param score centipawns, White's point of view
+         * @param text  the score as shown, e.g. {@link AnalysisWorker.Analysis#getScoreString()}
+         */
+        public void setScore(int score, String text) {
+            if (score != this.score || !text.equals(this.text)) {
+                this.score = score;
+                this.text = text;
+                repaint();
+            }
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            int w = getWidth();
+            int h = getHeight();
+            int whiteHeight = (int) Math.round(h * whiteShare());
+            g2.setColor(BLACK_SIDE);
+            g2.fillRect(0, 0, w, h - whiteHeight);
+            g2.setColor(WHITE_SIDE);
+            g2.fillRect(0, h - whiteHeight, w, whiteHeight);
+
+            // The score on the leading side's end of the bar
+            String text = this.text.replace("+", "");
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setFont(SCORE_FONT);
+            FontMetrics fm = g2.getFontMetrics();
+            int x = (w - fm.stringWidth(text)) / 2;
+            if (score >= 0) {
+                g2.setColor(BLACK_SIDE);
+                g2.drawString(text, x, h - fm.getDescent() - 2);
+            } else {
+                g2.setColor(WHITE_SIDE);
+                g2.drawString(text, x, fm.getAscent() + 2);
+            }
+            g2.dispose();
+        }
+
+        private double whiteShare() {
+            if (Math.abs(score) >= SearchEngine.TB_WIN - SearchEngine.MAX_PLY) return score > 0 ? 1 : 0;
+            return 1 / (1 + Math.exp(-score / PAWNS_SCALE));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+//AnalysisWorker.java
+
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Analyses positions on its own thread so the Event Dispatch Thread never
+ * waits for it: legal moves, check and game-over status, static evaluation,
+ * the endgame table verdict and, on request, engine lines. Every request works on
+ * an immutable snapshot of the board and hands its results to a listener on
+ * the EDT, at most one every {@value #PUBLISH_INTERVAL_MS} ms: when the
+ * search reports faster, only the newest analysis is delivered. A new request
+ * makes all older ones stale: a queued one is dropped, a running search is
+ * stopped, and nothing it still produces is delivered.
+ */
+public class AnalysisWorker {
+
+    /** Search time that means "until the next request". */
+    public static final long INFINITE = -1;
+    static final int PUBLISH_INTERVAL_MS = 150;
+
+    /**
+     * A position frozen at the time of a request. The board inside is a private
+     * copy that is only ever copied again, never played on.
+     */
+    public static final class Snapshot {
+        public final long hash;
+        public final GameLogic.Player sideToMove;
+        private final GameLogic.Board board;
+
+        public Snapshot(GameLogic.Board source) {
+            board = new GameLogic.Board(source);
+            hash = board.getHash();
+            sideToMove = board.getCurrentPlayer();
+        }
+
+        /** A new board in this position, free to be played on. */
+        public GameLogic.Board toBoard() {
+            return new GameLogic.Board(board);
+        }
+    }
+
+    /**
+     * What is known about one snapshot. Scores are from White's point of view.
+     * One is published as soon as the cheap parts are done, then again after
+     * every completed search iteration.
+     */
+    public static final class Analysis {
+        public final Snapshot snapshot;
+        public final int[] legalMoves;
+        public final boolean inCheck;
+        public final boolean gameOver;           // mate, stalemate, a forced rule draw or a claimed draw
+        public final int staticEval;
+        public final int endgameTableValue;         // EndgameTables.NOT_FOUND when not covered
+        public final SearchEngine.Result search; // null until the first iteration, or when not searching
+        public final SearchEngine.Result[] lines; // best first; search is lines[0], empty without search
+
+        private Analysis(Snapshot snapshot, GameLogic.Board board, EndgameTables endgameTables) {
+            this.snapshot = snapshot;
+            int[] moves = new int[256];
+            this.legalMoves = Arrays.copyOf(moves, board.generateLegalMoves(moves, 0));
+            this.inCheck = board.isInCheck();
+            this.gameOver = board.isGameOver() || legalMoves.length == 0 || board.isInsufficientMaterial()
+                || board.isFivefoldRepetition() || board.isSeventyFiveMoveDraw();
+            this.staticEval = whiteView(SearchEngine.evaluate(board));
+            this.endgameTableValue = endgameTables == null || gameOver ? EndgameTables.NOT_FOUND : endgameTables.probe(board);
+            this.search = null;
+            this.lines = new SearchEngine.Result[0];
+        }
+
+        private Analysis(Analysis base, SearchEngine.Result[] lines) {
+            this.snapshot = base.snapshot;
+            this.legalMoves = base.legalMoves;
+            this.inCheck = base.inCheck;
+            this.gameOver = base.gameOver;
+            this.staticEval = base.staticEval;
+            this.endgameTableValue = base.endgameTableValue;
+            this.search = lines[0];
+            this.lines = lines;
+        }
+
+        /** The search score if there is one, otherwise the static evaluation; exact once the game is over. */
+        public int getScore() {
+            if (gameOver) return legalMoves.length == 0 && inCheck ? whiteView(-SearchEngine.MATE) : 0;
+            return search != null ? whiteView(search.score) : staticEval;
+        }
+
+        /** A line's score from White's point of view. */
+        public int getScore(SearchEngine.Result line) {
+            return whiteView(line.score);
+        }
+
+        /** "1-0", "0-1" or "½-½" once the game is over, otherwise null. */
+        public String getResult() {
+            if (!gameOver) return null;
+            int score = getScore();
+            return score > 0 ? "1-0" : score < 0 ? "0-1" : "½-½";
+        }
+
+        /** The score as text, or the result once the game is over. */
+        public String getScoreString() {
+            return gameOver ? getResult() : SearchEngine.scoreString(getScore());
+        }
+
+        private int whiteView(int score) {
+            return snapshot.sideToMove == GameLogic.Player.WHITE ? score : -score;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "analysis");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY); // an endless analysis must not slow the UI
+        return t;
+    });
+    private final SearchEngine engine;
+    private volatile EndgameTables endgameTables;
+    private volatile long generation; // bumped per request; written on the EDT only
+    private Future<?> pending;        // EDT only
+
+    // Throttled delivery: the newest undelivered analysis, and when the listener last got one
+    private final AtomicReference<Delivery> latest = new AtomicReference<>();
+    private final Timer deliveryTimer = new Timer(PUBLISH_INTERVAL_MS, e -> deliver());
+    private long lastDelivery; // EDT only
+
+    private static final class Delivery {
+        final Analysis analysis;
+        final Consumer<Analysis> listener;
+        final long id;
+
+        Delivery(Analysis analysis, Consumer<Analysis> listener, long id) {
+            this.analysis = analysis;
+            this.listener = listener;
+            this.id = id;
+        }
+    }
+
+    /**
+     * @param transpositionTable table for the analysis engine; may be shared
+     *                           with the engine that plays, so each reuses the other's work
+     */
+    public AnalysisWorker(TranspositionTable transpositionTable) {
+        engine = new SearchEngine(transpositionTable);
+        deliveryTimer.setRepeats(false);
+    }
+
+    /**
+     * Endgame tables for the verdict and the search; null for none.
+     */
+    public void setEndgameTables(EndgameTables endgameTables) {
+        this.endgameTables = endgameTables;
+        engine.setEndgameTables(endgameTables);
+    }
+
+    /**
+     * Analyses the board's position in the background, replacing any earlier
+     * request. Must be called on the EDT.
+     *
+     * @param searchMillis time for an engine line; 0 for none
+     * @param listener     receives each analysis on the EDT, unless a newer request came first
+     */
+    public void analyze(GameLogic.Board board, long searchMillis, Consumer<Analysis> listener) {
+        analyze(board, searchMillis, 1, listener);
+    }
+
+    /**
+     * Same, with the best {@code lines} moves each given a line, and a search
+     * that runs until the next request or {@link #cancel()} when
+     * {@code searchMillis} is {@link #INFINITE}. The first analysis of a new
+     * position is delivered without waiting out the throttle.
+     */
+    public void analyze(GameLogic.Board board, long searchMillis, int lines, Consumer<Analysis> listener) {
+        cancel();
+        lastDelivery = 0;
+        Snapshot snapshot = new Snapshot(board);
+        long id = generation;
+        pending = executor.submit(() -> run(snapshot, searchMillis, lines, listener, id));
+    }
+
+    /**
+     * Drops the current request, if any; nothing more is published for it.
+     * Must be called on the EDT.
+     */
+    public void cancel() {
+        generation++;
+        engine.stop();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Stops the worker thread for good.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private void run(Snapshot snapshot, long searchMillis, int lines, Consumer<Analysis> listener, long id) {
+        if (id != generation) return;
+        GameLogic.Board board = snapshot.toBoard();
+        Analysis analysis = new Analysis(snapshot, board, endgameTables);
+        publish(analysis, listener, id);
+        if (searchMillis == 0 || analysis.gameOver) return;
+
+        // A stop issued after this point ends the search; one issued before it also bumped the generation
+        engine.resetStop();
+        if (id != generation) return;
+        engine.getTranspositionTable().newSearch();
+        long limit = searchMillis == INFINITE ? 0 : searchMillis;
+        if (lines > 1) {
+            engine.runMultiPv(board, lines, 0, limit, 0, results -> publish(new Analysis(analysis, results), listener, id));
+        } else {
+            engine.run(board, 0, limit, 0,
+                result -> publish(new Analysis(analysis, new SearchEngine.Result[] {result}), listener, id));
+        }
+    }
+
+    // Worker thread: posts a delivery unless one is already waiting, which then carries this analysis instead
+    private void publish(Analysis analysis, Consumer<Analysis> listener, long id) {
+        if (id != generation) return;
+        if (latest.getAndSet(new Delivery(analysis, listener, id)) == null) {
+            SwingUtilities.invokeLater(this::scheduleDelivery);
+        }
+    }
+
+    private void scheduleDelivery() {
+        long wait = lastDelivery + PUBLISH_INTERVAL_MS - System.currentTimeMillis();
+        if (wait <= 0) {
+            deliver();
+        } else if (!deliveryTimer.isRunning()) {
+            deliveryTimer.setInitialDelay((int) wait);
+            deliveryTimer.start();
+        }
+    }
+
+    private void deliver() {
+        Delivery delivery = latest.getAndSet(null);
+        if (delivery == null || delivery.id != generation) return;
+        lastDelivery = System.currentTimeMillis();
+        delivery.listener.accept(delivery.analysis);
+    }
+}
@@ -0,0 +1,171 @@
+//Benchmark.java
+
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Microbenchmarks for the GameLogic hot paths and for board rendering.
+ * Each benchmark is warmed up, then timed over several measurement rounds.
+ * It reports the time per operation and the bytes allocated per operation,
+ * taken from the thread's allocation counter.
+ *
+ * Usage:
+ *   java -Djava.awt.headless=true Benchmark [filter]    runs benchmarks whose name contains filter
+ */
+public class Benchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 5;
+    private static final long ROUND_NANOS = 200_000_000L;
+
+    // Middlegame position with captures, checks and both castling rights
+    private static final String KIWIPETE =
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    // Results are folded into this so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    private interface Operation {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        System.out.printf("%-32s %14s %14s%n", "Benchmark", "ns/op", "bytes/op");
+
+        GameLogic.Board board = new GameLogic.Board();
+        board.loadBoardStateString(KIWIPETE);
+        GameLogic.Position[] squares = new GameLogic.Position[64];
+        for (int sq = 0; sq < 64; sq++) squares[sq] = GameLogic.Position.of(sq);
+
+        run(filter, "getValidMovesForPiece", () -> {
+            long total = 0;
+            for (GameLogic.Position pos : squares) {
+                List<GameLogic.Position> moves = board.getValidMovesForPiece(pos);
+                total += moves.size();
+            }
+            return total;
+        });
+
+        run(filter, "isSquareAttackedBy", () -> {
+            long total = 0;
+            for (GameLogic.Position pos : squares) {
+                if (board.isSquareAttackedBy(pos, GameLogic.Player.WHITE)) total++;
+                if (board.isSquareAttackedBy(pos, GameLogic.Player.BLACK)) total++;
+            }
+            return total;
+        });
+
+        run(filter, "hasLegalMoves", () ->
+            board.hasLegalMoves(GameLogic.Player.WHITE) ? 1 : 0);
+
+        // Every legal root move of Kiwipete through the UI path, each followed by a takeback
+        int[] rootMoves = new int[256];
+        int rootCount = board.generateLegalMoves(rootMoves, 0);
+        run(filter, "makeMove+takeBack", () -> {
+            long total = 0;
+            for (int i = 0; i < rootCount; i++) {
+                if (board.makeMove(rootMoves[i])) total++;
+                board.takeBack();
+            }
+            return total;
+        });
+
+        run(filter, "getBoardStateString", () ->
+            board.getBoardStateString().length());
+
+        GameLogic.Board loadTarget = new GameLogic.Board();
+        run(filter, "loadBoardStateString", () -> {
+            loadTarget.loadBoardStateString(KIWIPETE);
+            return loadTarget.getHash();
+        });
+
+        byte[] binary = new byte[GameLogic.Board.MAX_BINARY_LENGTH];
+        run(filter, "encodeBinary", () ->
+            board.encodeBinary(binary, 0));
+
+        int binaryLength = board.encodeBinary(binary, 0);
+        run(filter, "loadBinary", () -> {
+            loadTarget.loadBinary(binary, 0, binaryLength);
+            return loadTarget.getHash();
+        });
+
+        BoardPanel panel = new BoardPanel(board);
+        java.awt.Dimension size = panel.getPreferredSize();
+        panel.setSize(size);
+        // Opaque, like the back buffer Swing paints into on screen
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        run(filter, "BoardPanel.paintComponent", () -> {
+            Graphics2D g = image.createGraphics();
+            try {
+                panel.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+            return image.getRGB(0, 0);
+        });
+
+        // What a move costs after repaintChanges(): two squares instead of the whole board
+        int square = size.width / 8;
+        run(filter, "BoardPanel.paintComponent 2sq", () -> {
+            Graphics2D g = image.createGraphics();
+            try {
+                g.clipRect(4 * square, 4 * square, square, 2 * square);
+                panel.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+            return image.getRGB(4 * square, 4 * square);
+        });
+    }
+
+    private static void run(String filter, String name, Operation op) {
+        if (!name.contains(filter)) return;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            measure(op);
+        }
+        double bestNanos = Double.MAX_VALUE;
+        double bytes = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            double[] result = measure(op);
+            bestNanos = Math.min(bestNanos, result[0]);
+            bytes += result[1];
+        }
+        System.out.printf("%-32s %14.1f %14.1f%n", name, bestNanos, bytes / MEASURE_ROUNDS);
+    }
+
+    /**
+     * Runs the operation for about one round.
+     * @return { nanoseconds per operation, bytes allocated per operation }
+     */
+    private static double[] measure(Operation op) {
+        long ops = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 64; i++) {
+                sink += op.run();
+            }
+            ops += 64;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ROUND_NANOS);
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new double[] { (double) elapsed / ops, (double) allocated / ops };
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or 0 where the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+}
@@ -4,33 +4,46 @@
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.swing.*;
 
 /**
  * Represents the graphical chessboard panel (JPanel).
  * Handles all drawing of the board, pieces, and highlights.
  * Also handles mouse clicks for piece selection and movement.
+ *
+ * The board fills the panel and is drawn in device pixels, so it stays
+ * sharp at any window size and HiDPI scale. The empty board and the twelve
+ * piece glyphs are rendered into images per pixel size and kept for a few
+ * sizes; a new size is rendered off the EDT while the nearest cached one is
+ * scaled in, so live resizing does not stutter. After a change only the
+ * squares whose contents or highlights differ are repainted (see
+ * {@link #repaintChanges()}), and a move slides into place on a Swing
+ * timer that repaints just the moving piece (see {@link #animateLastMove()}).
  */
 public class BoardPanel extends JPanel {
-    private static final int SQUARE_SIZE = 80;
-    private static final int BOARD_SIZE = 8 * SQUARE_SIZE;
-
-    // Unicode pieces
-    private final Font PIECE_FONT = new Font("SansSerif", Font.PLAIN, 60);
-    private final String[] PIECES = {
-        "K", "♔", "k", "♚",
-        "Q", "♕", "q", "♛",
-        "R", "♖", "r", "♜",
-        "B", "♗", "b", "♝",
-        "N", "♘", "n", "♞",
-        "P", "♙", "p", "♟"
+    private static final int DEFAULT_SQUARE_SIZE = 80;
+    private static final int MIN_SQUARE_SIZE = 16;
+    private static final int CACHED_SIZES = 4;
+
+    // Unicode pieces, indexed by piece code (color * 6 + type); glyphs are 3/4 of a square
+    private static final String[] PIECE_SYMBOLS = {
+        "♙", "♘", "♗", "♖", "♕", "♔",
+        "♟", "♞", "♝", "♜", "♛", "♚"
     };
+    private static final float PIECE_SCALE = 0.75f;
     
     // Colors
-    private final Color LIGHT_SQUARE = new Color(234, 221, 197); // #EADDC5
-    private final Color DARK_SQUARE = new Color(169, 138, 111); // #A98A6F
+    private static final Color LIGHT_SQUARE = new Color(234, 221, 197); // #EADDC5
+    private static final Color DARK_SQUARE = new Color(169, 138, 111); // #A98A6F
     private final Color SELECTED_COLOR = new Color(30, 144, 255, 128); // Dodgerblue with alpha
     private final Color VALID_MOVE_COLOR = new Color(0, 0, 0, 64); // Dark dot
     private final Color CHECK_COLOR = new Color(255, 0, 0, 150); // Red for check
@@ -43,86 +56,415 @@ public class BoardPanel extends JPanel {
     // Reference to the main frame to update status
     private SwingChessGame mainFrame;
 
+    // False while the computer is thinking, so clicks cannot move its pieces
+    private boolean inputEnabled = true;
+
+    /**
+     * The empty board and the piece sprites for one square size in device pixels.
+     */
+    private static final class SpriteSet {
+        final int squarePixels;
+        final BufferedImage background;
+        final BufferedImage[] sprites = new BufferedImage[12];
+        final Point[] offsets = new Point[12]; // where each sprite sits within its square
+
+        SpriteSet(int squarePixels, GraphicsConfiguration config) {
+            this.squarePixels = squarePixels;
+            int boardPixels = 8 * squarePixels;
+            background = createImage(config, boardPixels, boardPixels, Transparency.OPAQUE);
+            Graphics2D g = background.createGraphics();
+            for (int r = 0; r < 8; r++) {
+                for (int c = 0; c < 8; c++) {
+                    g.setColor((r + c) % 2 == 0 ? LIGHT_SQUARE : DARK_SQUARE);
+                    g.fillRect(c * squarePixels, r * squarePixels, squarePixels, squarePixels);
+                }
+            }
+            g.dispose();
+
+            Font font = new Font("SansSerif", Font.PLAIN, 1).deriveFont(squarePixels * PIECE_SCALE);
+            for (int code = 0; code < 12; code++) {
+                BufferedImage square = new BufferedImage(squarePixels, squarePixels, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D sg = square.createGraphics();
+                sg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                sg.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                sg.setFont(font);
+                FontMetrics fm = sg.getFontMetrics();
+                String symbol = PIECE_SYMBOLS[code];
+                int x = (squarePixels - fm.stringWidth(symbol)) / 2;
+                int y = (squarePixels - fm.getHeight()) / 2 + fm.getAscent();
+                sg.setColor(code < 6 ? Color.WHITE : Color.BLACK);
+                sg.drawString(symbol, x, y);
+                sg.dispose();
+
+                // Keep only the glyph's pixels: blending transparent margins is most of the cost of a sprite
+                Rectangle bounds = opaqueBounds(square);
+                BufferedImage sprite = createImage(config, bounds.width, bounds.height, Transparency.TRANSLUCENT);
+                Graphics2D cg = sprite.createGraphics();
+                cg.setComposite(AlphaComposite.Src);
+                cg.drawImage(square, -bounds.x, -bounds.y, null);
+                cg.dispose();
+                sprites[code] = sprite;
+                offsets[code] = bounds.getLocation();
+            }
+        }
+    }
+
+    // Renders sprite sets for new sizes; one thread, so a resize queues at most one at a time
+    private static final ExecutorService SPRITE_BUILDER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sprite-builder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Most recently used last; only touched on the EDT
+    private final Map<Integer, SpriteSet> spriteCache = new LinkedHashMap<Integer, SpriteSet>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, SpriteSet> eldest) {
+            return size() > CACHED_SIZES;
+        }
+    };
+    private SpriteSet lastUsed;
+    private int buildingSize; // size being rendered in the background, 0 if none
+    private int wantedSize;   // newest size asked for while that runs
+
+    // Geometry of the last paint, in device pixels, for hit testing and partial repaints
+    private double scale = 1;
+    private int squarePixels = DEFAULT_SQUARE_SIZE;
+    private int originX;
+    private int originY;
+
+    // --- Move animation ---
+    private static final int ANIMATION_MILLIS = 180;
+    private static final int FRAME_MILLIS = 15;
+    private final Timer animationTimer = new Timer(FRAME_MILLIS, e -> animationFrame());
+    // Pieces sliding into place: the mover, plus the rook when castling
+    private final int[] slideCodes = new int[2];
+    private final int[] slideFrom = new int[2];
+    private final int[] slideTo = new int[2];
+    private int slideCount;
+    private int fadingCode = GameLogic.Board.NO_PIECE; // captured piece, shown until the mover lands
+    private int fadingSquare;
+    private long animatedHash; // the position the animation belongs to
+    private long animationStart;
+    private double progress = 1;
+
+    // What each square showed after the last repaint request: piece code plus highlight bits
+    private static final int SHOWN_SELECTED = 1 << 4;
+    private static final int SHOWN_TARGET = 1 << 5;
+    private static final int SHOWN_CHECK = 1 << 6;
+    private final int[] shown = new int[64];
+    private final int[] current = new int[64];
+
     BoardPanel(GameLogic.Board logicBoard) {
         this.logicBoard = logicBoard;
-        setPreferredSize(new Dimension(BOARD_SIZE, BOARD_SIZE));
+        setPreferredSize(new Dimension(8 * DEFAULT_SQUARE_SIZE, 8 * DEFAULT_SQUARE_SIZE));
+        setMinimumSize(new Dimension(8 * MIN_SQUARE_SIZE, 8 * MIN_SQUARE_SIZE));
         addMouseListener(new BoardMouseListener());
     }
 
+    /**
+     * Shows another board. What was shown for the old one says nothing about
+     * the new one, so the next {@link #repaintChanges()} redraws every square.
+     */
+    public void setLogicBoard(GameLogic.Board board) {
+        this.logicBoard = board;
+        java.util.Arrays.fill(shown, -1); // matches no square's contents
+    }
+
     // Setters for UI state
-    public void setLogicBoard(GameLogic.Board board) { this.logicBoard = board; }
     public void setSelectedPos(GameLogic.Position pos) { this.selectedPos = pos; }
     public void setValidMoves(List<GameLogic.Position> moves) { this.validMoves = moves; }
     public void setFrame(SwingChessGame frame) { this.mainFrame = frame; }
+    public void setInputEnabled(boolean enabled) { this.inputEnabled = enabled; }
 
     /**
-     * Converts a piece character (e.g., 'P', 'r') to its Unicode symbol.
+     * Repaints only the squares whose piece or highlight changed since the
+     * last call. Use after moves, takebacks and selection changes; a plain
+     * repaint() still redraws everything.
      */
-    private String getPieceSymbol(char pieceChar) {
-        for (int i = 0; i < PIECES.length; i += 2) {
-            if (PIECES[i].charAt(0) == pieceChar) {
-                return PIECES[i+1];
+    public void repaintChanges() {
+        for (int sq = 0; sq < 64; sq++) {
+            current[sq] = logicBoard.getPieceCode(sq) & 0xF; // NO_PIECE becomes 15
+        }
+        if (logicBoard.isInCheck()) {
+            current[logicBoard.getKingPos(logicBoard.getCurrentPlayer()).square()] |= SHOWN_CHECK;
+        }
+        if (selectedPos != null) current[selectedPos.square()] |= SHOWN_SELECTED;
+        for (GameLogic.Position move : validMoves) {
+            current[move.square()] |= SHOWN_TARGET;
+        }
+
+        for (int sq = 0; sq < 64; sq++) {
+            if (current[sq] != shown[sq]) {
+                shown[sq] = current[sq];
+                // The repaint manager merges these into one region per event
+                repaint(squareBounds(sq % 8, sq / 8));
             }
         }
-        return "";
+    }
+
+    /** A square's area in component coordinates, rounded outwards. */
+    private Rectangle squareBounds(double col, double row) {
+        int x0 = (int) Math.floor((originX + col * squarePixels) / scale);
+        int y0 = (int) Math.floor((originY + row * squarePixels) / scale);
+        int x1 = (int) Math.ceil((originX + (col + 1) * squarePixels) / scale);
+        int y1 = (int) Math.ceil((originY + (row + 1) * squarePixels) / scale);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Slides the board's last move into place: the moved piece, and the rook
+     * when castling. The board already holds the new position; only the
+     * drawing lags behind. A move arriving while another is still sliding
+     * cuts that one short, so fast moves never queue up.
+     */
+    public void animateLastMove() {
+        repaintSlides(); // wherever a cut-short animation last drew its pieces
+        slideCount = 0;
+        fadingCode = GameLogic.Board.NO_PIECE;
+
+        int move = logicBoard.getLastMove();
+        if (move != GameLogic.Move.NONE) {
+            int from = GameLogic.Move.from(move);
+            int to = GameLogic.Move.to(move);
+            int code = logicBoard.getPieceCode(to);
+            if (GameLogic.Move.promotion(move) != 0) code = code / 6 * 6 + GameLogic.PAWN; // promote on landing
+            addSlide(code, from, to);
+            if (GameLogic.Move.isCastling(move)) {
+                int rookTo = to > from ? from + 1 : from - 1;
+                addSlide(logicBoard.getPieceCode(rookTo), to > from ? from + 3 : from - 4, rookTo);
+            }
+            fadingCode = logicBoard.getLastCaptured();
+            fadingSquare = GameLogic.Move.isEnPassant(move) ? from / 8 * 8 + to % 8 : to;
+            animatedHash = logicBoard.getHash();
+            animationStart = System.nanoTime();
+            progress = 0;
+            animationTimer.start();
+        } else {
+            animationTimer.stop();
+        }
+        repaintChanges();
+    }
+
+    private void addSlide(int code, int from, int to) {
+        slideCodes[slideCount] = code;
+        slideFrom[slideCount] = from;
+        slideTo[slideCount] = to;
+        slideCount++;
+    }
+
+    // Only while the board still shows the animated position; a takeback or load ends it
+    private boolean isAnimating() {
+        return slideCount > 0 && logicBoard.getHash() == animatedHash;
+    }
+
+    private void animationFrame() {
+        repaintSlides(); // where the pieces were
+        double t = Math.min(1.0, (System.nanoTime() - animationStart) / (ANIMATION_MILLIS * 1e6));
+        progress = t * (2 - t); // ease out
+        if (t >= 1.0) {
+            animationTimer.stop();
+            repaintSlides();
+            if (fadingCode != GameLogic.Board.NO_PIECE) repaint(squareBounds(fadingSquare % 8, fadingSquare / 8));
+            slideCount = 0;
+            fadingCode = GameLogic.Board.NO_PIECE;
+        } else {
+            repaintSlides(); // where they are now
+        }
+    }
+
+    private void repaintSlides() {
+        for (int i = 0; i < slideCount; i++) {
+            repaint(squareBounds(slideColumn(i), slideRow(i)));
+        }
+    }
+
+    private double slideColumn(int i) {
+        return slideFrom[i] % 8 + (slideTo[i] % 8 - slideFrom[i] % 8) * progress;
+    }
+
+    private double slideRow(int i) {
+        return slideFrom[i] / 8 + (slideTo[i] / 8 - slideFrom[i] / 8) * progress;
+    }
+
+    /**
+     * The sprite set for the given size if cached. Otherwise the nearest
+     * cached one, scaled when drawn, while the right size is rendered in the
+     * background; the very first set is rendered right away.
+     */
+    private SpriteSet spritesFor(int pixels) {
+        SpriteSet set = spriteCache.get(pixels);
+        if (set != null) {
+            lastUsed = set;
+            return set;
+        }
+        if (lastUsed == null) {
+            lastUsed = new SpriteSet(pixels, getGraphicsConfiguration());
+            spriteCache.put(pixels, lastUsed);
+            return lastUsed;
+        }
+        wantedSize = pixels;
+        if (buildingSize == 0) buildSprites(pixels);
+        return lastUsed;
+    }
+
+    private void buildSprites(int pixels) {
+        buildingSize = pixels;
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        CompletableFuture.supplyAsync(() -> new SpriteSet(pixels, config), SPRITE_BUILDER)
+            .whenCompleteAsync((set, error) -> {
+                buildingSize = 0;
+                if (error != null) {
+                    error.printStackTrace();
+                    return;
+                }
+                spriteCache.put(pixels, set);
+                if (wantedSize != pixels && !spriteCache.containsKey(wantedSize)) {
+                    buildSprites(wantedSize); // the window kept resizing meanwhile
+                } else {
+                    repaint();
+                }
+            }, SwingUtilities::invokeLater);
+    }
+
+    // An image in the screen's native format when there is a screen, so copies are fast
+    private static BufferedImage createImage(GraphicsConfiguration config, int width, int height, int transparency) {
+        if (config != null) return config.createCompatibleImage(width, height, transparency);
+        return new BufferedImage(width, height,
+            transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    /** Smallest rectangle holding every non-transparent pixel (at least 1x1). */
+    private static Rectangle opaqueBounds(BufferedImage image) {
+        int minX = image.getWidth(), minY = image.getHeight(), maxX = -1, maxY = -1;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) >>> 24) != 0) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        return maxX < 0 ? new Rectangle(0, 0, 1, 1) : new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            paintBoard(g2);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void paintBoard(Graphics2D g2) {
+        // Work in device pixels: square edges and sprites land on whole pixels at any scale
+        AffineTransform tx = g2.getTransform();
+        scale = tx.getScaleX() > 0 ? tx.getScaleX() : 1;
+        g2.setTransform(AffineTransform.getTranslateInstance(tx.getTranslateX(), tx.getTranslateY()));
+        int width = (int) Math.floor(getWidth() * scale);
+        int height = (int) Math.floor(getHeight() * scale);
+        squarePixels = Math.max(1, Math.min(width, height) / 8);
+        originX = (width - 8 * squarePixels) / 2;
+        originY = (height - 8 * squarePixels) / 2;
+        int sq = squarePixels;
+
+        SpriteSet set = spritesFor(sq);
+        if (set.squarePixels != sq) {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        double ratio = (double) sq / set.squarePixels;
+
+        // Only the squares inside the clip, e.g. the few a move changed
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, width, height);
+        int firstCol = Math.max(0, Math.floorDiv(clip.x - originX, sq));
+        int lastCol = Math.min(7, Math.floorDiv(clip.x + clip.width - 1 - originX, sq));
+        int firstRow = Math.max(0, Math.floorDiv(clip.y - originY, sq));
+        int lastRow = Math.min(7, Math.floorDiv(clip.y + clip.height - 1 - originY, sq));
 
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                // Draw square
-                Color squareColor = (r + c) % 2 == 0 ? LIGHT_SQUARE : DARK_SQUARE;
-                g2.setColor(squareColor);
-                g2.fillRect(c * SQUARE_SIZE, r * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
-
-                // Draw piece
-                GameLogic.Piece p = logicBoard.getPieceAt(new GameLogic.Position(r, c));
-                if (p != null) {
-                    g2.setFont(PIECE_FONT);
-                    String symbol = getPieceSymbol(p.getSymbol());
-                    FontMetrics fm = g2.getFontMetrics();
-                    int x = c * SQUARE_SIZE + (SQUARE_SIZE - fm.stringWidth(symbol)) / 2;
-                    int y = r * SQUARE_SIZE + ((SQUARE_SIZE - fm.getHeight()) / 2) + fm.getAscent();
-                    g2.setColor(p.getPlayer() == GameLogic.Player.WHITE ? Color.WHITE : Color.BLACK);
-                    g2.drawString(symbol, x, y);
+        if (ratio == 1) {
+            g2.drawImage(set.background, originX, originY, null);
+        } else {
+            g2.drawImage(set.background, originX, originY, 8 * sq, 8 * sq, null);
+        }
+        boolean animating = isAnimating();
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int square = r * 8 + c;
+                int code = logicBoard.getPieceCode(square);
+                if (animating) {
+                    // Landing squares stay empty until the slide ends; a captured piece waits there
+                    for (int i = 0; i < slideCount; i++) {
+                        if (slideTo[i] == square) code = GameLogic.Board.NO_PIECE;
+                    }
+                    if (square == fadingSquare && fadingCode != GameLogic.Board.NO_PIECE) code = fadingCode;
+                }
+                if (code != GameLogic.Board.NO_PIECE) {
+                    drawSprite(g2, set, code, originX + c * sq, originY + r * sq, ratio);
                 }
             }
         }
         
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
         // Highlight King in Check
-        if (logicBoard.isKingInCheck(logicBoard.getCurrentPlayer())) {
+        if (logicBoard.isInCheck()) {
             GameLogic.Position kingPos = logicBoard.getKingPos(logicBoard.getCurrentPlayer());
             g2.setColor(CHECK_COLOR);
-            g2.fillRect(kingPos.col * SQUARE_SIZE, kingPos.row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+            g2.fillRect(originX + kingPos.col * sq, originY + kingPos.row * sq, sq, sq);
         }
 
         // Highlight selected square
         if (selectedPos != null) {
             g2.setColor(SELECTED_COLOR);
-            g2.fillRect(selectedPos.col * SQUARE_SIZE, selectedPos.row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+            g2.fillRect(originX + selectedPos.col * sq, originY + selectedPos.row * sq, sq, sq);
         }
 
-        // Highlight valid moves
+        // Highlight valid moves, sized like the original 50px ring and 30px dot on an 80px square
         g2.setColor(VALID_MOVE_COLOR);
+        g2.setStroke(new BasicStroke(Math.max(1f, sq / 16f)));
+        int ring = sq * 5 / 16;
+        int dot = sq * 3 / 16;
         for (GameLogic.Position move : validMoves) {
-            int centerX = move.col * SQUARE_SIZE + SQUARE_SIZE / 2;
-            int centerY = move.row * SQUARE_SIZE + SQUARE_SIZE / 2;
+            int centerX = originX + move.col * sq + sq / 2;
+            int centerY = originY + move.row * sq + sq / 2;
             
-            if (logicBoard.getPieceAt(move) != null) {
+            if (logicBoard.getPieceCode(move.square()) != GameLogic.Board.NO_PIECE) {
                 // Draw a ring for captures
-                g2.setStroke(new BasicStroke(5));
-                g2.drawOval(centerX - 25, centerY - 25, 50, 50);
+                g2.drawOval(centerX - ring, centerY - ring, 2 * ring, 2 * ring);
             } else {
                 // Draw a dot for empty squares
-                g2.fillOval(centerX - 15, centerY - 15, 30, 30);
+                g2.fillOval(centerX - dot, centerY - dot, 2 * dot, 2 * dot);
+            }
+        }
+
+        // Sliding pieces go on top of everything
+        if (animating) {
+            for (int i = 0; i < slideCount; i++) {
+                drawSprite(g2, set, slideCodes[i], originX + (int) Math.round(slideColumn(i) * sq),
+                    originY + (int) Math.round(slideRow(i) * sq), ratio);
             }
         }
     }
+
+    /** Draws a piece sprite for the square whose top-left corner is at (x, y), in device pixels. */
+    private static void drawSprite(Graphics2D g2, SpriteSet set, int code, int x, int y, double ratio) {
+        BufferedImage sprite = set.sprites[code];
+        Point offset = set.offsets[code];
+        x += (int) Math.round(offset.x * ratio);
+        y += (int) Math.round(offset.y * ratio);
+        if (ratio == 1) {
+            g2.drawImage(sprite, x, y, null);
+        } else {
+            g2.drawImage(sprite, x, y, (int) Math.round(sprite.getWidth() * ratio),
+                (int) Math.round(sprite.getHeight() * ratio), null);
+        }
+    }
     
     /**
      * Handles mouse clicks on the board.
@@ -130,11 +472,14 @@ public class BoardPanel extends JPanel {
     class BoardMouseListener extends MouseAdapter {
         @Override
         public void mousePressed(MouseEvent e) {
-            if (logicBoard.isGameOver()) return;
+            if (logicBoard.isGameOver() || !inputEnabled) return;
 
-            int col = e.getX() / SQUARE_SIZE;
-            int row = e.getY() / SQUARE_SIZE;
+            // Same device-pixel geometry as the last paint
+            int col = Math.floorDiv((int) (e.getX() * scale) - originX, squarePixels);
+            int row = Math.floorDiv((int) (e.getY() * scale) - originY, squarePixels);
+            if (col < 0 || col > 7 || row < 0 || row > 7) return;
             GameLogic.Position clickedPos = new GameLogic.Position(row, col);
+            boolean moved = false;
             
             GameLogic.Piece clickedPiece = logicBoard.getPieceAt(clickedPos);
 
@@ -159,19 +504,27 @@ public class BoardPanel extends JPanel {
 
                 if (isValidMove) {
                     // --- Make the move ---
-                    logicBoard.makeMove(selectedPos, clickedPos);
+                    moved = logicBoard.makeMove(selectedPos, clickedPos);
                 }
                 
                 // --- Reset selection ---
                 selectedPos = null;
                 validMoves.clear();
+
+                if (moved && mainFrame != null) {
+                    mainFrame.onMoveMade();
+                }
             }
             
             // Update UI
             if (mainFrame != null) {
                 mainFrame.updateStatus();
             }
-            repaint();
+            if (moved) {
+                animateLastMove();
+            } else {
+                repaintChanges();
+            }
         }
     }
 }
@@ -0,0 +1,187 @@
+//ConnectionPool.java
+
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small fixed-size JDBC connection pool used by DatabaseManager.
+ * Connections are opened lazily, checked with Connection.isValid() before
+ * being handed out when they have been idle for a while, and replaced when
+ * they turn out to be broken, so a restarted MySQL server is picked up
+ * again without restarting the game.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * A unit of database work run on a pooled connection.
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long IDLE_BEFORE_VALIDATION_MS = 5_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+
+    private final Semaphore permits;
+    private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+    private final ArrayDeque<Long> idleSince = new ArrayDeque<>();
+    private boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMs) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Runs the work on a pooled connection. If the connection fails with a
+     * connection-level error (SQLState class 08), it is discarded and the
+     * work is retried once on a freshly opened connection.
+     */
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        try {
+            return executeOnce(work);
+        } catch (SQLException e) {
+            if (!isConnectionFailure(e)) throw e;
+            return executeOnce(work);
+        }
+    }
+
+    private <T> T executeOnce(SqlWork<T> work) throws SQLException {
+        Connection conn = borrow();
+        boolean broken = false;
+        try {
+            return work.run(conn);
+        } catch (SQLException e) {
+            broken = isConnectionFailure(e);
+            throw e;
+        } finally {
+            release(conn, broken);
+        }
+    }
+
+    /**
+     * Takes a healthy connection from the pool, opening one if needed.
+     * Callers must hand it back with release().
+     */
+    public Connection borrow() throws SQLException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                    "No database connection free after " + borrowTimeoutMs + " ms (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            while (true) {
+                Connection conn;
+                long since;
+                synchronized (this) {
+                    if (closed) throw new SQLException("Connection pool is closed");
+                    conn = idle.pollLast();
+                    since = conn != null ? idleSince.pollLast() : 0;
+                }
+                if (conn == null) {
+                    return DriverManager.getConnection(url, user, password);
+                }
+                if (System.currentTimeMillis() - since < IDLE_BEFORE_VALIDATION_MS || isHealthy(conn)) {
+                    return conn;
+                }
+                closeQuietly(conn); // stale: drop it and try the next one
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed connection. Broken connections are closed instead of reused.
+     */
+    public void release(Connection conn, boolean broken) {
+        if (conn == null) return;
+        boolean keep = false;
+        if (!broken) {
+            synchronized (this) {
+                if (!closed) {
+                    idle.addLast(conn);
+                    idleSince.addLast(System.currentTimeMillis());
+                    keep = true;
+                }
+            }
+        }
+        if (!keep) closeQuietly(conn);
+        permits.release();
+    }
+
+    /**
+     * Number of connections currently open but not borrowed.
+     */
+    public synchronized int getIdleCount() { return idle.size(); }
+
+    public int getMaxSize() { return maxSize; }
+
+    @Override
+    public void close() {
+        ArrayDeque<Connection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+            idleSince.clear();
+        }
+        for (Connection conn : toClose) {
+            closeQuietly(conn);
+        }
+    }
+
+    private static boolean isHealthy(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * True for errors that mean the connection itself is unusable (SQLState
+     * class 08, or a closed connection) rather than a problem with the statement.
+     */
+    static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true;
+            }
+            if (t instanceof java.net.SocketException || t instanceof java.io.EOFException) return true;
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // already broken; nothing more to do
+        }
+    }
+}
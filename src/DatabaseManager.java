@@ -4,129 +4,638 @@
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles all database communication for saving and loading games.
  * Requires the MySQL JDBC driver (Connector/J) to be in the classpath.
+ *
+ * Connections come from a small pool that checks and replaces dead ones.
+ * The *Async methods run on a bounded background executor, so the UI
+ * never waits on MySQL; callers choose where the result is delivered.
  */
 public class DatabaseManager {
 
     // --- IMPORTANT ---
     // Change these values to match your MySQL server setup
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/chessgame";
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/chessgame?rewriteBatchedStatements=true";
     private static final String USER = "root"; // e.g., "root"
     private static final String PASS = "root"; // e.g., "password"
     // ---------------
 
-    private Connection conn;
+    private static final int POOL_SIZE = 4;
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+    private static final int MAX_QUEUED_TASKS = 256;
+    private static final int MOVE_BATCH_SIZE = 500;
+
+    private final ConnectionPool pool;
+    private final ExecutorService executor;
 
     /**
-     * Establishes the database connection upon creation.
+     * Opens the pool and checks that the database can be reached.
      */
     public DatabaseManager() {
         try {
             // Load the MySQL JDBC driver
             Class.forName("com.mysql.cj.jdbc.Driver");
-            // Establish connection
-            conn = DriverManager.getConnection(DB_URL, USER, PASS);
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("MySQL JDBC Driver not found. Make sure Connector/J is in your classpath.", e);
+        }
+        pool = new ConnectionPool(DB_URL, USER, PASS, POOL_SIZE, BORROW_TIMEOUT_MS);
+        try {
+            // Fail fast, as before, so the game can fall back to offline mode
+            pool.release(pool.borrow(), false);
         } catch (SQLException e) {
+            pool.close();
             throw new RuntimeException("Failed to connect to the database. Check URL, username, and password.", e);
         }
+        executor = createExecutor();
+    }
+
+    /**
+     * Virtual threads when the JVM has them (Java 21+), otherwise a small
+     * daemon thread pool with a bounded queue. Either way the number of
+     * statements in flight is capped by the connection pool.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_TASKS), r -> {
+                    Thread t = new Thread(r, "chess-db");
+                    t.setDaemon(true);
+                    return t;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    // --- Asynchronous API ---
+
+    /**
+     * Saves a snapshot of the board taken on the calling thread, so the
+     * caller may keep playing while the write is in flight.
+     */
+    public CompletableFuture<Void> saveGameAsync(String gameName, GameLogic.Board board) {
+        GameLogic.Board snapshot = new GameLogic.Board(board);
+        return supplyAsync(() -> {
+            saveGame(gameName, snapshot);
+            return null;
+        });
+    }
+
+    /**
+     * Completes with the loaded board, or null if there is no such game.
+     */
+    public CompletableFuture<GameLogic.Board> loadGameAsync(String gameName) {
+        return supplyAsync(() -> loadGame(gameName));
+    }
+
+    public CompletableFuture<List<String>> getSavedGamesAsync() {
+        return supplyAsync(this::getSavedGames);
+    }
+
+    /**
+     * Explorer query for the board's current position; the board is only
+     * read on the calling thread.
+     */
+    public CompletableFuture<List<ExplorerMove>> getExplorerMovesAsync(GameLogic.Board board, int limit) {
+        GameLogic.Board snapshot = new GameLogic.Board(board);
+        return supplyAsync(() -> getExplorerMoves(snapshot, limit));
+    }
+
+    @FunctionalInterface
+    private interface SqlTask<T> {
+        T call() throws SQLException;
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(SqlTask<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e); // queue full or manager closed
+        }
     }
 
+    // --- Blocking API (runs on the calling thread) ---
+
     /**
-     * Saves the current board state to the database.
-     * Overwrites any existing game with the same name.
+     * Saves the current board state to the database, along with the position
+     * the game started from and every move played since, so loading can replay
+     * the game. Overwrites any existing game with the same name. The row and
+     * the moves are written in one transaction; the moves go in JDBC batches.
      */
     public void saveGame(String gameName, GameLogic.Board board) throws SQLException {
+        saveGames(List.of(gameName), List.of(board), null);
+    }
+
+    /**
+     * Saves many games in one transaction, e.g. from a PGN import. Rows, moves
+     * and the position index are sent as JDBC batches instead of one round
+     * trip per game.
+     * @param results "1-0", "0-1", "1/2-1/2" or "*" per game; null to take them from the boards
+     */
+    public void saveGames(List<String> gameNames, List<GameLogic.Board> boards, List<String> results) throws SQLException {
         // SQL query to insert or update
-        String sql = "INSERT INTO saved_games (game_name, board_state, current_player, castling_rights, en_passant_target) " +
-                     "VALUES (?, ?, ?, ?, ?) " +
+        String sql = "INSERT INTO saved_games (game_name, board_state, current_player, castling_rights, en_passant_target, start_fen, position, result) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
                      "ON DUPLICATE KEY UPDATE " +
                      "board_state = VALUES(board_state), " +
                      "current_player = VALUES(current_player), " +
                      "castling_rights = VALUES(castling_rights), " +
-                     "en_passant_target = VALUES(en_passant_target)";
+                     "en_passant_target = VALUES(en_passant_target), " +
+                     "start_fen = VALUES(start_fen), " +
+                     "position = VALUES(position), " +
+                     "result = VALUES(result)";
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, gameName);
-            pstmt.setString(2, board.getBoardStateString()); // "rnbqkbnr/..."
-            pstmt.setString(3, board.getCurrentPlayer().name()); // "WHITE" or "BLACK"
-            pstmt.setString(4, board.getCastlingRightsString()); // "KQkq" or "-"
-            
-            GameLogic.Position enPassant = board.getEnPassantTarget();
-            if (enPassant != null) {
-                pstmt.setString(5, enPassant.toString()); // "e3"
-            } else {
-                pstmt.setNull(5, Types.VARCHAR);
+        pool.execute(conn -> inTransaction(conn, () -> {
+            try (PreparedStatement games = conn.prepareStatement(sql);
+                 PreparedStatement clearMoves = conn.prepareStatement("DELETE FROM game_moves WHERE game_name = ?");
+                 PreparedStatement clearPositions = conn.prepareStatement("DELETE FROM positions WHERE game_name = ?")) {
+                for (int i = 0; i < gameNames.size(); i++) {
+                    GameLogic.Board board = boards.get(i);
+                    games.setString(1, gameNames.get(i));
+                    games.setString(2, board.getBoardStateString()); // "rnbqkbnr/..."
+                    games.setString(3, board.getCurrentPlayer().name()); // "WHITE" or "BLACK"
+                    games.setString(4, board.getCastlingRightsString()); // "KQkq" or "-"
+
+                    GameLogic.Position enPassant = board.getEnPassantTarget();
+                    if (enPassant != null) {
+                        games.setString(5, enPassant.toString()); // "e3"
+                    } else {
+                        games.setNull(5, Types.VARCHAR);
+                    }
+                    games.setString(6, board.getStartFen());
+                    games.setBytes(7, board.toBinary());
+                    games.setString(8, results != null ? results.get(i) : Pgn.resultOf(board));
+                    games.addBatch();
+                    clearMoves.setString(1, gameNames.get(i));
+                    clearMoves.addBatch();
+                    clearPositions.setString(1, gameNames.get(i));
+                    clearPositions.addBatch();
+                }
+                games.executeBatch();
+                clearMoves.executeBatch();
+                clearPositions.executeBatch();
             }
 
-            pstmt.executeUpdate();
+            String movesSql = "INSERT INTO game_moves (game_name, ply, move) VALUES (?, ?, ?)";
+            String positionsSql = "INSERT INTO positions (position_hash, game_name, ply, next_move) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement moveInsert = conn.prepareStatement(movesSql);
+                 PreparedStatement positionInsert = conn.prepareStatement(positionsSql)) {
+                int pending = 0;
+                for (int i = 0; i < gameNames.size(); i++) {
+                    String gameName = gameNames.get(i);
+                    GameLogic.Board board = boards.get(i);
+                    int[] moves = board.getMoveHistory();
+
+                    // Walk the game from its start to index every position reached
+                    GameLogic.Board replay = new GameLogic.Board();
+                    replay.loadBoardStateString(board.getStartFen());
+                    for (int ply = 0; ply <= moves.length; ply++) {
+                        String move = ply < moves.length ? GameLogic.Move.toString(moves[ply]) : null;
+                        positionInsert.setLong(1, replay.getHash());
+                        positionInsert.setString(2, gameName);
+                        positionInsert.setInt(3, ply);
+                        if (move != null) {
+                            positionInsert.setString(4, move);
+                        } else {
+                            positionInsert.setNull(4, Types.VARCHAR); // final position
+                        }
+                        positionInsert.addBatch();
+                        if (move != null) {
+                            moveInsert.setString(1, gameName);
+                            moveInsert.setInt(2, ply);
+                            moveInsert.setString(3, move);
+                            moveInsert.addBatch();
+                            replay.doMove(moves[ply]);
+                        }
+                        if (++pending == MOVE_BATCH_SIZE) {
+                            moveInsert.executeBatch();
+                            positionInsert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+                if (pending > 0) {
+                    moveInsert.executeBatch();
+                    positionInsert.executeBatch();
+                }
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * One continuation in the opening explorer: a move played from the
+     * queried position and how the games that played it ended.
+     */
+    public static class ExplorerMove {
+        public final String move; // UCI notation
+        public final int games;
+        public final int whiteWins;
+        public final int draws;
+        public final int blackWins;
+
+        ExplorerMove(String move, int games, int whiteWins, int draws, int blackWins) {
+            this.move = move;
+            this.games = games;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
         }
     }
 
     /**
-     * Loads a game state from the database.
+     * Moves played from the board's position in the stored games, most
+     * frequent first, with the results of those games. Positions are looked
+     * up by Zobrist key through the positions table index.
+     */
+    public List<ExplorerMove> getExplorerMoves(GameLogic.Board board, int limit) throws SQLException {
+        String sql = "SELECT p.next_move, COUNT(*) AS games, " +
+                     "SUM(g.result = '1-0') AS white_wins, " +
+                     "SUM(g.result = '1/2-1/2') AS draws, " +
+                     "SUM(g.result = '0-1') AS black_wins " +
+                     "FROM positions p JOIN saved_games g ON g.game_name = p.game_name " +
+                     "WHERE p.position_hash = ? AND p.next_move IS NOT NULL " +
+                     "GROUP BY p.next_move ORDER BY games DESC LIMIT ?";
+        long hash = board.getHash();
+
+        return pool.execute(conn -> {
+            List<ExplorerMove> moves = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setLong(1, hash);
+                pstmt.setInt(2, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        moves.add(new ExplorerMove(rs.getString("next_move"), rs.getInt("games"),
+                            rs.getInt("white_wins"), rs.getInt("draws"), rs.getInt("black_wins")));
+                    }
+                }
+            }
+            return moves;
+        });
+    }
+
+    /**
+     * Loads a game from the database. Games saved with their move list are
+     * replayed from the start position, which restores the clocks and the
+     * full history; otherwise the binary snapshot is decoded, and rows older
+     * than that are read from the text columns.
      * @return A new Board object, or null if the game is not found.
      */
     public GameLogic.Board loadGame(String gameName) throws SQLException {
         String sql = "SELECT * FROM saved_games WHERE game_name = ?";
-        
+
+        return pool.execute(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, gameName);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        String startFen = rs.getString("start_fen");
+                        if (startFen != null) {
+                            GameLogic.Board replayed = replayGame(conn, gameName, startFen);
+                            if (replayed != null) return replayed;
+                        }
+
+                        GameLogic.Board board = new GameLogic.Board(); // Create a fresh board
+
+                        byte[] position = rs.getBytes("position");
+                        if (position != null) {
+                            board.loadBinary(position);
+                            return board;
+                        }
+
+                        // Older rows: load and set all properties from the text columns
+                        board.loadBoardStateString(rs.getString("board_state"));
+                        board.setCurrentPlayer(GameLogic.Player.valueOf(rs.getString("current_player")));
+                        board.loadCastlingRightsString(rs.getString("castling_rights"));
+
+                        String enPassantStr = rs.getString("en_passant_target");
+                        if (enPassantStr != null) {
+                            board.setEnPassantTarget(GameLogic.Position.fromString(enPassantStr));
+                        } else {
+                            board.setEnPassantTarget(null);
+                        }
+
+                        return board;
+                    }
+                }
+            }
+            return null; // Game not found
+        });
+    }
+
+    /**
+     * Plays the stored moves from the start position.
+     * @return the replayed board, or null if a stored move is not legal
+     */
+    private GameLogic.Board replayGame(Connection conn, String gameName, String startFen) throws SQLException {
+        GameLogic.Board board = new GameLogic.Board();
+        board.loadBoardStateString(startFen);
+        String sql = "SELECT ply, move FROM game_moves WHERE game_name = ? ORDER BY ply";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, gameName);
-            
+            pstmt.setFetchSize(256);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    GameLogic.Board board = new GameLogic.Board(); // Create a fresh board
-                    
-                    // Load and set all properties
-                    board.loadBoardStateString(rs.getString("board_state"));
-                    board.setCurrentPlayer(GameLogic.Player.valueOf(rs.getString("current_player")));
-                    board.loadCastlingRightsString(rs.getString("castling_rights"));
-                    
-                    String enPassantStr = rs.getString("en_passant_target");
-                    if (enPassantStr != null) {
-                        board.setEnPassantTarget(GameLogic.Position.fromString(enPassantStr));
-                    } else {
-                        board.setEnPassantTarget(null);
-                    }
-
-                    return board;
+                int expectedPly = 0;
+                while (rs.next()) {
+                    if (rs.getInt("ply") != expectedPly++) return null; // gap in the history
+                    // parseUciMove only finds legal moves; doMove skips the game-over gate,
+                    // so games played on past a claimable draw still replay
+                    int move = board.parseUciMove(rs.getString("move"));
+                    if (move == GameLogic.Move.NONE) return null;
+                    board.doMove(move);
                 }
             }
         }
-        return null; // Game not found
+        board.refreshGameStatus();
+        return board;
+    }
+
+    private static void deleteMovesFrom(Connection conn, String gameName, int fromPly) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM game_moves WHERE game_name = ? AND ply >= ?")) {
+            pstmt.setString(1, gameName);
+            pstmt.setInt(2, fromPly);
+            pstmt.executeUpdate();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlBlock<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Runs the block as one transaction on the given connection.
+     */
+    private static <T> T inTransaction(Connection conn, SqlBlock<T> block) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            T result = block.run();
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            try {
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException ignored) {
+                // the pool drops the connection if it is broken
+            }
+        }
     }
 
     /**
      * Retrieves a list of all saved game names.
      */
     public List<String> getSavedGames() throws SQLException {
-        List<String> gameNames = new ArrayList<>();
         String sql = "SELECT game_name FROM saved_games ORDER BY last_updated DESC";
-        
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                gameNames.add(rs.getString("game_name"));
+
+        return pool.execute(conn -> {
+            List<String> gameNames = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+
+                while (rs.next()) {
+                    gameNames.add(rs.getString("game_name"));
+                }
+            }
+            return gameNames;
+        });
+    }
+
+    // --- Write-behind move log ---
+
+    /**
+     * Creates a write-behind log for recording moves as they are played,
+     * e.g. by a server running many games at once. Moves are buffered and
+     * written in one JDBC batch when flushEvery moves are waiting or
+     * flushMillis have passed, whichever comes first.
+     */
+    public MoveLog openMoveLog(int flushEvery, long flushMillis) {
+        return new MoveLog(flushEvery, flushMillis);
+    }
+
+    /**
+     * Buffers appended moves and takebacks for any number of games and
+     * writes them behind the callers' backs. Flushes run one at a time on
+     * the manager's executor, in the order the moves were recorded.
+     * A batch that cannot be written, because MySQL fails or the executor
+     * is full, is kept and retried ahead of newer moves by the next flush.
+     * The game must be saved once with saveGame (which stores its start
+     * position) to be loadable.
+     */
+    public final class MoveLog implements AutoCloseable {
+        private final int flushEvery;
+        private final java.util.concurrent.ScheduledExecutorService timer;
+
+        // Pending operations; a takeback is stored with move = Move.NONE
+        private List<String> games = new ArrayList<>();
+        private int[] plies = new int[64];
+        private int[] moves = new int[64];
+        private Batch unwritten; // failed or rejected batches, oldest first; null when none
+        private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+        private boolean closed;
+
+        private MoveLog(int flushEvery, long flushMillis) {
+            this.flushEvery = Math.max(1, flushEvery);
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "chess-db-movelog");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Records the move played at the given ply (0 = first move of the game).
+         */
+        public synchronized void append(String gameName, int ply, int move) {
+            add(gameName, ply, move);
+        }
+
+        /**
+         * Records that every move from the given ply on was taken back.
+         */
+        public synchronized void truncate(String gameName, int fromPly) {
+            add(gameName, fromPly, GameLogic.Move.NONE);
+        }
+
+        private void add(String gameName, int ply, int move) {
+            if (closed) throw new IllegalStateException("Move log is closed");
+            int n = games.size();
+            if (n == plies.length) {
+                plies = java.util.Arrays.copyOf(plies, n * 2);
+                moves = java.util.Arrays.copyOf(moves, n * 2);
+            }
+            games.add(gameName);
+            plies[n] = ply;
+            moves[n] = move;
+            if (n + 1 >= flushEvery) flush();
+        }
+
+        /**
+         * Writes everything recorded so far, including what earlier flushes
+         * could not write.
+         * @return completes when this and all earlier flushes are in the
+         *         database; fails if this flush's moves were kept for a retry
+         */
+        public synchronized CompletableFuture<Void> flush() {
+            if (games.isEmpty() && unwritten == null) return lastFlush;
+            Batch batch = new Batch(games, java.util.Arrays.copyOf(plies, games.size()),
+                java.util.Arrays.copyOf(moves, games.size()));
+            games = new ArrayList<>();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            lastFlush.whenComplete((ignored, previousError) -> write(batch, done)); // one batch at a time
+            lastFlush = done;
+            return done;
+        }
+
+        // Runs once the previous flush is over, so anything it could not write is already in unwritten
+        private void write(Batch own, CompletableFuture<Void> done) {
+            Batch batch;
+            synchronized (this) {
+                batch = Batch.concat(unwritten, own);
+                unwritten = null;
+            }
+            if (batch.games.isEmpty()) {
+                done.complete(null);
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        writeBatch(batch);
+                        done.complete(null);
+                    } catch (SQLException | RuntimeException e) {
+                        keep(batch, done, e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                keep(batch, done, e); // queue full or manager closed
+            }
+        }
+
+        private void keep(Batch batch, CompletableFuture<Void> done, Exception e) {
+            synchronized (this) {
+                unwritten = Batch.concat(unwritten, batch);
+            }
+            done.completeExceptionally(e);
+        }
+
+        private void writeBatch(Batch batch) throws SQLException {
+            pool.execute(conn -> inTransaction(conn, () -> {
+                String sql = "INSERT INTO game_moves (game_name, ply, move) VALUES (?, ?, ?) " +
+                             "ON DUPLICATE KEY UPDATE move = VALUES(move)";
+                try (PreparedStatement insert = conn.prepareStatement(sql)) {
+                    int pending = 0;
+                    for (int i = 0; i < batch.games.size(); i++) {
+                        if (batch.moves[i] == GameLogic.Move.NONE) {
+                            // Keep the order: write queued moves before applying the takeback
+                            if (pending > 0) {
+                                insert.executeBatch();
+                                pending = 0;
+                            }
+                            deleteMovesFrom(conn, batch.games.get(i), batch.plies[i]);
+                            continue;
+                        }
+                        insert.setString(1, batch.games.get(i));
+                        insert.setInt(2, batch.plies[i]);
+                        insert.setString(3, GameLogic.Move.toString(batch.moves[i]));
+                        insert.addBatch();
+                        if (++pending == MOVE_BATCH_SIZE) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) insert.executeBatch();
+                }
+                return null;
+            }));
+        }
+
+        /**
+         * Flushes what is left and stops the timer. Waits for the final write.
+         * @throws SQLException if some recorded moves could not be written
+         */
+        @Override
+        public void close() throws SQLException {
+            CompletableFuture<Void> last;
+            synchronized (this) {
+                if (closed) return;
+                last = flush();
+                closed = true;
+            }
+            timer.shutdown();
+            try {
+                last.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) throw (SQLException) cause;
+                throw new SQLException("Recorded moves were not written", cause);
             }
         }
-        return gameNames;
+    }
+
+    // Operations taken from a MoveLog for one write, in recording order
+    private static final class Batch {
+        final List<String> games;
+        final int[] plies;
+        final int[] moves;
+
+        Batch(List<String> games, int[] plies, int[] moves) {
+            this.games = games;
+            this.plies = plies;
+            this.moves = moves;
+        }
+
+        static Batch concat(Batch first, Batch second) {
+            if (first == null) return second;
+            int n = first.games.size();
+            List<String> games = new ArrayList<>(first.games);
+            games.addAll(second.games);
+            int[] plies = java.util.Arrays.copyOf(first.plies, n + second.plies.length);
+            int[] moves = java.util.Arrays.copyOf(first.moves, n + second.moves.length);
+            System.arraycopy(second.plies, 0, plies, n, second.plies.length);
+            System.arraycopy(second.moves, 0, moves, n, second.moves.length);
+            return new Batch(games, plies, moves);
+        }
     }
 
     /**
-     * Closes the database connection.
+     * Stops accepting new work, lets queued saves finish (up to a few
+     * seconds), then closes all pooled connections.
      */
     public void close() {
+        executor.shutdown();
         try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        pool.close();
     }
 }
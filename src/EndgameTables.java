@@ -0,0 +1,674 @@
+//EndgameTables.java
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Endgame tables in this program's own format: the exact result of every
+ * position with few pieces. Tables are generated here by retrograde analysis
+ * ("java EndgameTables generate")
+ * into a directory with one file per material signature, e.g. KQvK.tbl, and
+ * are memory-mapped read-only from there, so probing needs no heap and no network.
+ *
+ * Each table holds one signed byte per position and side to move, indexed by
+ * the squares of its pieces: 0 is a draw, n > 0 a win and -n-1 a loss, where
+ * n is the DTZ, the plies to the next capture, pawn move or mate under best
+ * play (the metric Syzygy tables use). The 50-move rule is not applied.
+ *
+ * This is not a Syzygy prober: Syzygy .rtbw/.rtbz files use a compressed
+ * format this class does not read.
+ *
+ * Usage:
+ *   java EndgameTables generate dir [maxPieces]   writes all tables up to maxPieces (default 3, at most 4)
+ *   java EndgameTables probe dir "fen"            prints the result and the best move
+ */
+public class EndgameTables {
+
+    /** Returned by {@link #probe} for positions not covered by the tables. */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    public static final int MAX_GENERATED_PIECES = 4;
+    private static final int DEFAULT_GENERATED_PIECES = 3;
+    private static final int MAX_DTZ = 127;
+
+    private static final String EXTENSION = ".tbl";
+    private static final byte[] MAGIC = {'J', 'C', 'T', 'B'};
+    private static final int HEADER_SIZE = 8; // magic, version, piece count, 2 spare bytes
+    private static final int VERSION = 1;
+
+    private static final String PIECE_LETTERS = "PNBRQK"; // by GameLogic piece type
+    private static final int[] SIGNATURE_VALUES = {1, 3, 3, 5, 9, 0};
+    private static final Pattern TABLE_NAME = Pattern.compile("(K[QRBNP]*)v(K[QRBNP]*)");
+
+    /**
+     * One material signature: the piece codes of its index slots, White's
+     * pieces first and strongest first, and the table data after the header.
+     */
+    private static final class Table {
+        final int[] codes;
+        final ByteBuffer data;
+
+        Table(int[] codes, ByteBuffer data) {
+            this.codes = codes;
+            this.data = data;
+        }
+
+        int value(int index) {
+            return data.get(HEADER_SIZE + index);
+        }
+    }
+
+    // Sorted by material key, so a probe is a binary search without boxing
+    private final int[] keys;
+    private final Table[] tables;
+    private final int maxPieces;
+
+    /**
+     * Maps every table file in the directory.
+     * @throws IOException if the directory holds no usable table, or a table file is damaged
+     */
+    public EndgameTables(Path directory) throws IOException {
+        this(loadTables(directory));
+        if (tables.length == 0) {
+            boolean syzygy = false;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{rtbw,rtbz}")) {
+                syzygy = files.iterator().hasNext();
+            }
+            throw new IOException("No " + EXTENSION + " tables in " + directory
+                + (syzygy ? " (Syzygy .rtbw/.rtbz files are not supported)" : "")
+                + "; create them with \"java EndgameTables generate " + directory + "\"");
+        }
+    }
+
+    private EndgameTables(List<Table> list) {
+        list.sort(Comparator.comparingInt(t -> materialKey(t.codes)));
+        keys = new int[list.size()];
+        tables = new Table[list.size()];
+        int max = 2;
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = list.get(i);
+            keys[i] = materialKey(tables[i].codes);
+            max = Math.max(max, tables[i].codes.length);
+        }
+        maxPieces = max;
+    }
+
+    /** Largest number of pieces, kings included, that any table covers. */
+    public int getMaxPieces() { return maxPieces; }
+
+    public int getTableCount() { return tables.length; }
+
+    /**
+     * Looks the position up.
+     * @return 0 for a draw, n > 0 for a win with DTZ n, -n-1 for a loss with DTZ n,
+     *         all from the side to move's view; or NOT_FOUND
+     */
+    public int probe(GameLogic.Board board) {
+        int count = Long.bitCount(board.getOccupied());
+        if (count > maxPieces || board.getCastlingRights() != 0 || canCaptureEnPassant(board)) {
+            return NOT_FOUND;
+        }
+        if (count == 2) return 0; // bare kings
+
+        int key = materialKey(board);
+        boolean flip = false;
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0) {
+            flip = true;
+            i = Arrays.binarySearch(keys, flipKey(key));
+            if (i < 0) return NOT_FOUND;
+        }
+        Table table = tables[i];
+        return table.value(index(board, table.codes, flip));
+    }
+
+    /** Whether the side to move has a pawn that can take en passant; the tables do not index that. */
+    private static boolean canCaptureEnPassant(GameLogic.Board board) {
+        int ep = board.getEnPassantSquare();
+        if (ep == GameLogic.Board.NO_SQUARE) return false;
+        GameLogic.Player us = board.getCurrentPlayer();
+        return (GameLogic.Attacks.pawn(us.opponent().ordinal(), ep) & board.getPieces(us, GameLogic.PAWN)) != 0;
+    }
+
+    /** DTZ of a probe value: plies to the next capture, pawn move or mate. */
+    public static int dtz(int value) {
+        return value >= 0 ? value : -value - 1;
+    }
+
+    /**
+     * The move the tables prefer: the quickest win (mate first, then a
+     * zeroing move, then the lowest DTZ), a drawing move, or the loss that
+     * holds out longest. The board is left as it was.
+     * @return Move.NONE if the position or one of its successors is not covered
+     */
+    public int bestMove(GameLogic.Board board) {
+        if (probe(board) == NOT_FOUND) return GameLogic.Move.NONE;
+        int[] moves = new int[256];
+        int count = board.generateLegalMoves(moves, 0);
+        int bestMove = GameLogic.Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            boolean zeroing = isZeroing(board, move);
+            board.doMove(move);
+            int value = probe(board);
+            board.undoMove();
+            if (value == NOT_FOUND) return GameLogic.Move.NONE;
+
+            int rank;
+            if (value < 0) {        // the opponent is lost: we win
+                rank = 1000 - (value == -1 ? -1 : zeroing ? 0 : dtz(value));
+            } else if (value == 0) {
+                rank = 0;
+            } else {                // the opponent wins: hold out as long as possible
+                rank = -1000 + (zeroing ? 0 : dtz(value));
+            }
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    // --- Indexing ---
+
+    private static boolean isZeroing(GameLogic.Board board, int move) {
+        return GameLogic.Move.isCapture(move)
+            || board.getPieceCode(GameLogic.Move.from(move)) % 6 == GameLogic.PAWN;
+    }
+
+    /**
+     * Slot index of the position: side to move, then one 6-bit square per
+     * piece in table order. With flip the board is read with colours swapped
+     * and ranks mirrored, for signatures stored the other way round.
+     */
+    private static int index(GameLogic.Board board, int[] codes, boolean flip) {
+        int stm = board.getCurrentPlayer().ordinal();
+        int index = flip ? stm ^ 1 : stm;
+        long bits = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (i == 0 || codes[i] != codes[i - 1]) {
+                int code = flip ? (codes[i] + 6) % 12 : codes[i];
+                bits = board.getPieces(code < 6 ? GameLogic.Player.WHITE : GameLogic.Player.BLACK, code % 6);
+            }
+            int sq = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            index = index * 64 + (flip ? sq ^ 56 : sq);
+        }
+        return index;
+    }
+
+    // Three bits per non-king piece count, White's five types in the low 15 bits
+    private static int materialKey(int[] codes) {
+        int key = 0;
+        for (int code : codes) {
+            if (code % 6 != GameLogic.KING) key += 1 << (3 * (code / 6 * 5 + code % 6));
+        }
+        return key;
+    }
+
+    private static int materialKey(GameLogic.Board board) {
+        int key = 0;
+        for (int type = GameLogic.PAWN; type < GameLogic.KING; type++) {
+            key += Long.bitCount(board.getPieces(GameLogic.Player.WHITE, type)) << (3 * type);
+            key += Long.bitCount(board.getPieces(GameLogic.Player.BLACK, type)) << (3 * (5 + type));
+        }
+        return key;
+    }
+
+    private static int flipKey(int key) {
+        return (key >>> 15) | ((key & 0x7FFF) << 15);
+    }
+
+    // --- Files ---
+
+    private static List<Table> loadTables(Path directory) throws IOException {
+        List<Table> list = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                name = name.substring(0, name.length() - EXTENSION.length());
+                int[] codes = parseSignature(name);
+                if (codes == null) continue;
+                list.add(mapTable(file, name, codes));
+            }
+        }
+        return list;
+    }
+
+    private static Table mapTable(Path file, String name, int[] codes) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_SIZE + tableSize(codes.length)) {
+                throw new IOException("Wrong size for " + name + ": " + channel.size() + " bytes");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        checkHeader(data, codes.length, file);
+        return new Table(codes, data);
+    }
+
+    private static void checkHeader(ByteBuffer data, int pieces, Path file) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(i) != MAGIC[i]) throw new IOException("Not a table file: " + file);
+        }
+        if (data.get(4) != VERSION || data.get(5) != pieces) {
+            throw new IOException("Unsupported table version or piece count: " + file);
+        }
+    }
+
+    private static int tableSize(int pieces) {
+        return 2 << (6 * pieces);
+    }
+
+    /**
+     * Slot codes for a name like "KRvKP", or null if it is not a table name
+     * this class can index.
+     */
+    static int[] parseSignature(String name) {
+        Matcher m = TABLE_NAME.matcher(name);
+        if (!m.matches()) return null;
+        String white = m.group(1);
+        String black = m.group(2);
+        if (white.length() + black.length() > MAX_GENERATED_PIECES) return null;
+        int[] codes = new int[white.length() + black.length()];
+        int n = 0;
+        for (char c : white.toCharArray()) codes[n++] = PIECE_LETTERS.indexOf(c);
+        for (char c : black.toCharArray()) codes[n++] = 6 + PIECE_LETTERS.indexOf(c);
+        return codes;
+    }
+
+    // --- Generation ---
+
+    private static final byte UNKNOWN = 0, WIN = 1, LOSS = 2, DRAW = 3, INVALID = 4;
+
+    /**
+     * Writes every table with up to maxPieces pieces into the directory.
+     * Tables are built in an order where captures and promotions only lead
+     * into tables already built.
+     */
+    public static void generate(Path directory, int maxPieces) throws IOException {
+        if (maxPieces < 3 || maxPieces > MAX_GENERATED_PIECES) {
+            throw new IllegalArgumentException("maxPieces must be between 3 and " + MAX_GENERATED_PIECES);
+        }
+        Files.createDirectories(directory);
+        List<Table> done = new ArrayList<>();
+        for (String name : signatures(maxPieces)) {
+            long start = System.currentTimeMillis();
+            int[] codes = parseSignature(name);
+            byte[] file = solve(codes, new EndgameTables(new ArrayList<>(done)));
+            Path path = directory.resolve(name + EXTENSION);
+            Files.write(path, file);
+            done.add(mapTable(path, name, codes)); // mapped, so finished tables stay off the heap
+            System.out.printf("%-8s %6d ms%n", name, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Names of all signatures with 3..maxPieces pieces, stronger side as
+     * White, ordered by piece count and then pawn count. Signatures with
+     * pawns on both sides are left out: en passant would not be indexed.
+     */
+    static List<String> signatures(int maxPieces) {
+        List<String> sides = new ArrayList<>();
+        sides.add("K");
+        for (int extra = 1; extra <= maxPieces - 2; extra++) {
+            List<String> longer = new ArrayList<>();
+            for (String side : sides) {
+                if (side.length() != extra) continue;
+                char last = side.charAt(side.length() - 1);
+                for (char c : "QRBNP".toCharArray()) {
+                    // Letters in "QRBNP" order only, so each multiset appears once
+                    if (last == 'K' || "QRBNP".indexOf(c) >= "QRBNP".indexOf(last)) longer.add(side + c);
+                }
+            }
+            sides.addAll(longer);
+        }
+
+        List<String> names = new ArrayList<>();
+        for (String white : sides) {
+            for (String black : sides) {
+                int pieces = white.length() + black.length();
+                if (pieces < 3 || pieces > maxPieces) continue;
+                if (compareSides(white, black) < 0) continue;
+                if (white.indexOf('P') >= 0 && black.indexOf('P') >= 0) continue;
+                names.add(white + "v" + black);
+            }
+        }
+        names.sort(Comparator.comparingInt(String::length).thenComparingLong(n -> n.chars().filter(c -> c == 'P').count()));
+        return names;
+    }
+
+    private static int compareSides(String a, String b) {
+        int diff = sideValue(a) - sideValue(b);
+        if (diff != 0) return diff;
+        if (a.length() != b.length()) return a.length() - b.length();
+        // Same value and size: order by piece letters so exactly one orientation is kept
+        return b.compareTo(a);
+    }
+
+    private static int sideValue(String side) {
+        int value = 0;
+        for (char c : side.toCharArray()) value += SIGNATURE_VALUES[PIECE_LETTERS.indexOf(c)];
+        return value;
+    }
+
+    /**
+     * Retrograde analysis of one signature. One pass over the table marks
+     * mates, stalemates and positions decided by captures or promotions into
+     * smaller tables, and counts each position's moves. Decided positions are
+     * then worked off a queue: un-making moves from each one finds its
+     * predecessors, which win if it is lost, or lose once every move reaches
+     * a won position. The DTZ is found the same way in a second queue, in
+     * order of increasing DTZ, following only moves that do not zero it.
+     * @param known the tables that captures and promotions lead into
+     * @return the complete table file
+     */
+    private static byte[] solve(int[] codes, EndgameTables known) {
+        int size = tableSize(codes.length);
+        byte[] state = new byte[size];
+        byte[] remaining = new byte[size]; // moves not yet known to lose, then non-zeroing moves of lost positions
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        GameLogic.Board board = new GameLogic.Board();
+        int[] squares = new int[codes.length];
+        int[] sorted = new int[codes.length];
+        int[] moves = new int[256];
+        int[] predecessors = new int[256];
+
+        for (int index = 0; index < size; index++) {
+            // Identical pieces are indexed in square order only; other orders are never probed
+            if (!decode(codes, index, squares) || encode(codes, squares, index >>> (6 * codes.length), sorted) != index
+                    || !setUp(board, codes, index, squares)) {
+                state[index] = INVALID;
+                continue;
+            }
+            int count = board.generateLegalMoves(moves, 0);
+            if (count == 0) {
+                state[index] = board.isKingInCheck(board.getCurrentPlayer()) ? LOSS : DRAW;
+                if (state[index] == LOSS) queue[tail++] = index;
+                continue;
+            }
+            int open = 0;
+            boolean win = false;
+            for (int i = 0; i < count && !win; i++) {
+                int move = moves[i];
+                if (!leavesTable(move)) {
+                    open++;
+                    continue;
+                }
+                int child = childState(board, move, codes, state, known);
+                if (child == LOSS) win = true;
+                else if (child == DRAW) open++; // never becomes a loss
+            }
+            if (win || open == 0) {
+                state[index] = win ? WIN : LOSS;
+                queue[tail++] = index;
+            } else {
+                remaining[index] = (byte) open;
+            }
+        }
+
+        // Win/draw/loss: whatever the queue never reaches is a draw
+        while (head < tail) {
+            int index = queue[head++];
+            boolean lost = state[index] == LOSS;
+            int count = predecessors(codes, index, squares, sorted, true, predecessors);
+            for (int i = 0; i < count; i++) {
+                int previous = predecessors[i];
+                if (state[previous] != UNKNOWN) continue;
+                if (lost) {
+                    state[previous] = WIN;
+                    queue[tail++] = previous;
+                } else if (--remaining[previous] == 0) {
+                    state[previous] = LOSS;
+                    queue[tail++] = previous;
+                }
+            }
+        }
+        for (int index = 0; index < size; index++) {
+            if (state[index] == UNKNOWN) state[index] = DRAW;
+        }
+
+        // DTZ: 0 when mated; 1 for a win with a zeroing move to a lost position,
+        // and for a loss whose every move zeroes. The rest follow by un-making
+        // non-zeroing moves, so each position is dequeued after all lower DTZs
+        short[] dtz = new short[size];
+        Arrays.fill(dtz, (short) -1);
+        for (int index = 0; index < size; index++) {
+            if (state[index] != WIN && state[index] != LOSS) continue;
+            setUp(board, codes, index, squares);
+            int count = board.generateLegalMoves(moves, 0);
+            if (count == 0) {
+                dtz[index] = 0;
+            } else if (state[index] == WIN) {
+                for (int i = 0; i < count; i++) {
+                    int move = moves[i];
+                    if (isZeroing(board, move) && childState(board, move, codes, state, known) == LOSS) {
+                        dtz[index] = 1;
+                        break;
+                    }
+                }
+            } else {
+                int open = 0;
+                for (int i = 0; i < count; i++) {
+                    if (!isZeroing(board, moves[i])) open++;
+                }
+                if (open == 0) dtz[index] = 1;
+                remaining[index] = (byte) open;
+            }
+        }
+        head = 0;
+        tail = 0;
+        for (int level = 0; level <= 1; level++) {
+            for (int index = 0; index < size; index++) {
+                if (dtz[index] == level) queue[tail++] = index;
+            }
+        }
+        while (head < tail) {
+            int index = queue[head++];
+            boolean lost = state[index] == LOSS;
+            short next = (short) (dtz[index] + 1);
+            int count = predecessors(codes, index, squares, sorted, false, predecessors);
+            for (int i = 0; i < count; i++) {
+                int previous = predecessors[i];
+                if (dtz[previous] >= 0) continue;
+                if (lost ? state[previous] == WIN : state[previous] == LOSS && --remaining[previous] == 0) {
+                    dtz[previous] = next;
+                    queue[tail++] = previous;
+                }
+            }
+        }
+
+        byte[] file = new byte[HEADER_SIZE + size];
+        System.arraycopy(MAGIC, 0, file, 0, MAGIC.length);
+        file[4] = VERSION;
+        file[5] = (byte) codes.length;
+        for (int index = 0; index < size; index++) {
+            if (state[index] != WIN && state[index] != LOSS) continue;
+            if (dtz[index] < 0) throw new IllegalStateException("DTZ did not converge");
+            int d = Math.min(dtz[index], MAX_DTZ);
+            file[HEADER_SIZE + index] = (byte) (state[index] == WIN ? d : -d - 1);
+        }
+        return file;
+    }
+
+    /**
+     * Places the pieces of the given index on the board.
+     * @return false if the index is not a legal position
+     */
+    private static boolean setUp(GameLogic.Board board, int[] codes, int index, int[] squares) {
+        if (!decode(codes, index, squares)) return false;
+        GameLogic.Player side = index >>> (6 * codes.length) == 0 ? GameLogic.Player.WHITE : GameLogic.Player.BLACK;
+        board.setUpPieces(codes, squares, codes.length, side);
+        // The side that just moved cannot have left its king in check
+        return !board.isKingInCheck(side == GameLogic.Player.WHITE ? GameLogic.Player.BLACK : GameLogic.Player.WHITE);
+    }
+
+    /**
+     * Reads the piece squares of an index.
+     * @return false if two pieces share a square or a pawn stands on a back rank
+     */
+    private static boolean decode(int[] codes, int index, int[] squares) {
+        long used = 0;
+        int rest = index;
+        for (int i = codes.length - 1; i >= 0; i--) {
+            int sq = rest & 63;
+            rest >>>= 6;
+            long bit = 1L << sq;
+            if ((used & bit) != 0) return false;
+            if (codes[i] % 6 == GameLogic.PAWN && (sq < 8 || sq >= 56)) return false;
+            used |= bit;
+            squares[i] = sq;
+        }
+        return true;
+    }
+
+    /**
+     * Index of a position given as piece squares, with identical pieces put
+     * in square order (sorted into the scratch array).
+     */
+    private static int encode(int[] codes, int[] squares, int side, int[] sorted) {
+        int index = side;
+        for (int i = 0; i < codes.length; i++) {
+            int j = i;
+            for (; j > 0 && codes[j - 1] == codes[i] && sorted[j - 1] > squares[i]; j--) {
+                sorted[j] = sorted[j - 1];
+            }
+            sorted[j] = squares[i];
+        }
+        for (int i = 0; i < codes.length; i++) index = index * 64 + sorted[i];
+        return index;
+    }
+
+    /**
+     * Writes the indexes of the legal positions from which one move that stays
+     * in the table (no capture or promotion) leads to the given one; with
+     * pawns false, only the moves that do not zero the DTZ.
+     * @return the number of predecessors written
+     */
+    private static int predecessors(int[] codes, int index, int[] squares, int[] sorted, boolean pawns, int[] out) {
+        decode(codes, index, squares);
+        int side = index >>> (6 * codes.length);
+        int mover = side ^ 1;
+        long occupied = 0;
+        int king = -1;
+        for (int i = 0; i < codes.length; i++) {
+            occupied |= 1L << squares[i];
+            if (codes[i] == side * 6 + GameLogic.KING) king = i;
+        }
+
+        int n = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] / 6 != mover) continue;
+            int sq = squares[i];
+            int type = codes[i] % 6;
+            long origins;
+            if (type != GameLogic.PAWN) {
+                origins = attacks(type, mover, sq, occupied) & ~occupied;
+            } else if (!pawns) {
+                continue;
+            } else {
+                // Back one rank, or two from the double step's target rank
+                int back = mover == 0 ? sq + 8 : sq - 8;
+                int startRow = mover == 0 ? 6 : 1;
+                origins = 0;
+                if ((back >> 3) != (mover == 0 ? 7 : 0) && (occupied & (1L << back)) == 0) {
+                    origins = 1L << back;
+                    int twoBack = mover == 0 ? back + 8 : back - 8;
+                    if ((twoBack >> 3) == startRow && (occupied & (1L << twoBack)) == 0) origins |= 1L << twoBack;
+                }
+            }
+            while (origins != 0) {
+                int from = Long.numberOfTrailingZeros(origins);
+                origins &= origins - 1;
+                squares[i] = from;
+                // The side to move here is the one that just moved before: its king must not be attacked
+                if (!attacked(codes, squares, squares[king], mover, occupied ^ (1L << sq) ^ (1L << from))) {
+                    out[n++] = encode(codes, squares, mover, sorted);
+                }
+            }
+            squares[i] = sq;
+        }
+        return n;
+    }
+
+    private static long attacks(int type, int color, int sq, long occupied) {
+        switch (type) {
+            case GameLogic.PAWN: return GameLogic.Attacks.pawn(color, sq);
+            case GameLogic.KNIGHT: return GameLogic.Attacks.knight(sq);
+            case GameLogic.BISHOP: return GameLogic.Attacks.bishop(sq, occupied);
+            case GameLogic.ROOK: return GameLogic.Attacks.rook(sq, occupied);
+            case GameLogic.QUEEN: return GameLogic.Attacks.queen(sq, occupied);
+            default: return GameLogic.Attacks.king(sq);
+        }
+    }
+
+    private static boolean attacked(int[] codes, int[] squares, int target, int by, long occupied) {
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] / 6 == by && (attacks(codes[i] % 6, by, squares[i], occupied) & (1L << target)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean leavesTable(int move) {
+        return GameLogic.Move.isCapture(move) || GameLogic.Move.promotion(move) != 0;
+    }
+
+    /** WIN, LOSS, DRAW or UNKNOWN for the side to move after the move. */
+    private static int childState(GameLogic.Board board, int move, int[] codes, byte[] state, EndgameTables known) {
+        boolean leavesTable = leavesTable(move);
+        board.doMove(move);
+        int result;
+        if (leavesTable) {
+            int value = known.probe(board);
+            if (value == NOT_FOUND) throw new IllegalStateException("Missing table after " + GameLogic.Move.toString(move));
+            result = value > 0 ? WIN : value < 0 ? LOSS : DRAW;
+        } else {
+            result = state[index(board, codes, false)];
+        }
+        board.undoMove();
+        return result;
+    }
+
+    // --- Command line ---
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("generate")) {
+            int maxPieces = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_GENERATED_PIECES;
+            generate(Paths.get(args[1]), maxPieces);
+        } else if (args.length >= 3 && args[0].equals("probe")) {
+            EndgameTables tables = new EndgameTables(Paths.get(args[1]));
+            GameLogic.Board board = new GameLogic.Board();
+            board.loadBoardStateString(args[2]);
+            int value = tables.probe(board);
+            if (value == NOT_FOUND) {
+                System.out.println("Not in the tables (" + tables.getTableCount()
+                    + " tables, up to " + tables.getMaxPieces() + " pieces)");
+                return;
+            }
+            String result = value > 0 ? "win" : value < 0 ? "loss" : "draw";
+            System.out.println(result + (value != 0 ? ", DTZ " + dtz(value) : "")
+                + ", best move " + GameLogic.Move.toString(tables.bestMove(board)));
+        } else {
+            System.err.println("Usage: java EndgameTables generate <dir> [maxPieces] | probe <dir> \"fen\"");
+        }
+    }
+}
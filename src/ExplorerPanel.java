@@ -0,0 +1,95 @@
+//ExplorerPanel.java
+
+
+import java.awt.*;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Side panel showing the opening explorer: which moves the stored games
+ * played from the current position, and how those games ended.
+ * Queries run in the background through DatabaseManager; only the newest
+ * answer is shown, so the board stays responsive while moves are played.
+ */
+public class ExplorerPanel extends JPanel {
+    private static final int MAX_MOVES = 12;
+    private static final String[] COLUMNS = {"Move", "Games", "White", "Draw", "Black"};
+
+    private final DatabaseManager dbManager;
+    private final DefaultTableModel model;
+    private final JLabel statusLabel = new JLabel(" ");
+
+    private long shownHash;
+    private boolean hasShown;
+    private int requestId; // bumped per query; older answers are dropped
+
+    ExplorerPanel(DatabaseManager dbManager) {
+        super(new BorderLayout(0, 5));
+        this.dbManager = dbManager;
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setPreferredSize(new Dimension(260, 0));
+
+        JLabel title = new JLabel("Opening Explorer");
+        title.setFont(title.getFont().deriveFont(Font.BOLD));
+        add(title, BorderLayout.NORTH);
+
+        model = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        table.setRowSelectionAllowed(false);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows the statistics for the board's position. Must be called on the
+     * EDT; does nothing if that position is already shown or being fetched.
+     */
+    public void showPosition(GameLogic.Board board) {
+        if (hasShown && board.getHash() == shownHash) return;
+        hasShown = true;
+        shownHash = board.getHash();
+        int id = ++requestId;
+        GameLogic.Board snapshot = new GameLogic.Board(board); // for writing the moves in SAN
+        statusLabel.setText("Searching...");
+
+        dbManager.getExplorerMovesAsync(snapshot, MAX_MOVES).whenCompleteAsync((moves, error) -> {
+            if (id != requestId) return; // the board has moved on
+            if (error != null) {
+                model.setRowCount(0);
+                statusLabel.setText("Explorer unavailable");
+                return;
+            }
+            showMoves(snapshot, moves);
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Fetches the current position again, e.g. after games were saved.
+     */
+    public void reload(GameLogic.Board board) {
+        hasShown = false;
+        showPosition(board);
+    }
+
+    private void showMoves(GameLogic.Board board, List<DatabaseManager.ExplorerMove> moves) {
+        model.setRowCount(0);
+        int total = 0;
+        for (DatabaseManager.ExplorerMove m : moves) {
+            int move = board.parseUciMove(m.move);
+            String name = move == GameLogic.Move.NONE ? m.move : Pgn.toSan(board, move);
+            model.addRow(new Object[] {name, m.games,
+                percent(m.whiteWins, m.games), percent(m.draws, m.games), percent(m.blackWins, m.games)});
+            total += m.games;
+        }
+        statusLabel.setText(moves.isEmpty() ? "No stored games reach this position" : total + " games");
+    }
+
+    private static String percent(int part, int whole) {
+        return whole == 0 ? "-" : Math.round(100.0 * part / whole) + "%";
+    }
+}
@@ -3,7 +3,6 @@
 
 import java.util.ArrayList;
 import java.util.List;
-import javax.swing.JOptionPane;
 
 /**
  * Contains all backend game logic: the Board state, Piece definitions,
@@ -11,6 +10,14 @@ import javax.swing.JOptionPane;
  */
 public class GameLogic {
 
+    // Piece type indices, shared by the bitboards and the Piece classes
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
     /**
      * Represents a coordinate on the board.
      */
@@ -18,15 +25,34 @@ public class GameLogic {
         int row;
         int col;
 
+        // One shared instance per square, so the bitboard code can hand out positions without allocating
+        private static final Position[] SQUARES = new Position[64];
+        static {
+            for (int sq = 0; sq < 64; sq++) {
+                SQUARES[sq] = new Position(sq >> 3, sq & 7);
+            }
+        }
+
         public Position(int row, int col) {
             this.row = row;
             this.col = col;
         }
-        
+
         public boolean isValid() {
             return row >= 0 && row < 8 && col >= 0 && col < 8;
         }
-        
+
+        /**
+         * Square index used by the bitboards: row * 8 + col, so a8 is 0 and h1 is 63.
+         */
+        public int square() {
+            return row * 8 + col;
+        }
+
+        public static Position of(int square) {
+            return SQUARES[square];
+        }
+
         // Helper to convert "e2" to new Position(6, 4)
         public static Position fromString(String s) {
             if (s == null || s.length() != 2) return null;
@@ -39,7 +65,7 @@ public class GameLogic {
             int row = 8 - (rowChar - '0');
             return new Position(row, col);
         }
-        
+
         @Override
         public String toString() {
             if (!isValid()) return "";
@@ -55,580 +81,1553 @@ public class GameLogic {
             Position position = (Position) obj;
             return row == position.row && col == position.col;
         }
+
+        @Override
+        public int hashCode() {
+            return row * 8 + col;
+        }
     }
 
     /**
      * Represents the two players.
      */
     public enum Player {
-        WHITE, BLACK
+        WHITE, BLACK;
+
+        public Player opponent() {
+            return this == WHITE ? BLACK : WHITE;
+        }
+    }
+
+    /**
+     * Precomputed attack tables. Knight, king and pawn attacks are plain
+     * per-square lookups; rook and bishop attacks use magic bitboards, where
+     * the relevant blockers are multiplied by a per-square magic number to
+     * index a shared table. Every query is a few array reads and never allocates.
+     */
+    static final class Attacks {
+        static final long FILE_A = 0x0101010101010101L;
+        static final long FILE_H = FILE_A << 7;
+
+        private static final long[] KNIGHT = new long[64];
+        private static final long[] KING = new long[64];
+        private static final long[][] PAWN = new long[2][64];
+
+        private static final long[] ROOK_MASK = new long[64];
+        private static final long[] ROOK_MAGIC = {
+            0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+            0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+            0x0400800040008021L, 0x0400400020005000L, 0x8240801000200080L, 0x8611001004200900L,
+            0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+            0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+            0x0001818014000800L, 0xA002010100080400L, 0x0080240001020870L, 0x0001020004048845L,
+            0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+            0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+            0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+            0x4540040080800800L, 0x0002001004040020L, 0x0281195814001002L, 0x1240800040800100L,
+            0x0880042000524004L, 0x02C080410206002CL, 0x0801200241050010L, 0x8400080010008080L,
+            0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+            0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+            0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+            0x8044110480002441L, 0x2008110084402202L, 0x90806005090010C1L, 0x000420310A004A42L,
+            0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+        };
+        private static final int[] ROOK_SHIFT = new int[64];
+        private static final int[] ROOK_OFFSET = new int[64];
+        private static final long[] ROOK_TABLE;
+
+        private static final long[] BISHOP_MASK = new long[64];
+        private static final long[] BISHOP_MAGIC = {
+            0x0020428400408200L, 0x2008010104210004L, 0x02D0009200480190L, 0x0018158B00010100L,
+            0x02C4042132048008L, 0x020082202000C221L, 0x4000421050080009L, 0x0210140202022020L,
+            0x00C0101410042248L, 0x0405204800D48080L, 0x3800C89200420002L, 0x180844124A020440L,
+            0x04403410A8002221L, 0x4040209004200400L, 0x084004020202A204L, 0x3010002104022000L,
+            0x00200240A9110900L, 0x2302800404080210L, 0x0204188800240010L, 0x8048000C01401200L,
+            0x120C001A11040900L, 0x0000401200500440L, 0x00004040840420A0L, 0x0020930822880804L,
+            0x4044401090900161L, 0x0034100015210804L, 0x8004100009010120L, 0x48C8080000820500L,
+            0x0080848004002000L, 0x0801004012005044L, 0x000080902C040400L, 0x0004009005004100L,
+            0x0B103010048A0200L, 0x8004100203181A00L, 0x0800140200100080L, 0x8401010800910040L,
+            0x0840010011290040L, 0x40100214202E1000L, 0x0842040040010840L, 0x0028010040010860L,
+            0x00080202A2051000L, 0x4200841008084204L, 0x0021120110000D02L, 0x48C1004208000084L,
+            0x0010088100414400L, 0x0021101000420580L, 0x0010040558401410L, 0x200C0C82A1050205L,
+            0x0011108820088000L, 0x0001011910120402L, 0x1580008608091248L, 0x8010018020880C02L,
+            0x20A1101032088480L, 0x0080100408082800L, 0x28100401140401C0L, 0x8002102200930012L,
+            0x4001040082080200L, 0x082200A498081808L, 0x000508610080D003L, 0x0052020044842402L,
+            0x4800A00140C84840L, 0x5000000848080820L, 0x0101086004240040L, 0x0028280808005014L
+        };
+        private static final int[] BISHOP_SHIFT = new int[64];
+        private static final int[] BISHOP_OFFSET = new int[64];
+        private static final long[] BISHOP_TABLE;
+
+        private static final int[][] ROOK_DIRECTIONS = { {-1, 0}, {1, 0}, {0, -1}, {0, 1} };
+        private static final int[][] BISHOP_DIRECTIONS = { {-1, -1}, {-1, 1}, {1, -1}, {1, 1} };
+        private static final int[][] KNIGHT_STEPS = { {-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1} };
+        private static final int[][] KING_STEPS = { {-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1} };
+
+        static {
+            for (int sq = 0; sq < 64; sq++) {
+                KNIGHT[sq] = stepAttacks(sq, KNIGHT_STEPS);
+                KING[sq] = stepAttacks(sq, KING_STEPS);
+                long b = 1L << sq;
+                PAWN[0][sq] = ((b >>> 9) & ~FILE_H) | ((b >>> 7) & ~FILE_A);
+                PAWN[1][sq] = ((b << 7) & ~FILE_H) | ((b << 9) & ~FILE_A);
+            }
+            ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+            BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+        }
+
+        private Attacks() {}
+
+        static long knight(int sq) { return KNIGHT[sq]; }
+        static long king(int sq) { return KING[sq]; }
+
+        /**
+         * Squares attacked by a pawn of the given color (0 = white) standing on sq.
+         */
+        static long pawn(int color, int sq) { return PAWN[color][sq]; }
+
+        static long rook(int sq, long occ) {
+            return ROOK_TABLE[ROOK_OFFSET[sq] + (int) (((occ & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+        }
+
+        static long bishop(int sq, long occ) {
+            return BISHOP_TABLE[BISHOP_OFFSET[sq] + (int) (((occ & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+        }
+
+        static long queen(int sq, long occ) {
+            return rook(sq, occ) | bishop(sq, occ);
+        }
+
+        private static long stepAttacks(int sq, int[][] steps) {
+            long attacks = 0L;
+            for (int[] d : steps) {
+                int r = (sq >> 3) + d[0];
+                int c = (sq & 7) + d[1];
+                if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    attacks |= 1L << (r * 8 + c);
+                }
+            }
+            return attacks;
+        }
+
+        /**
+         * Reference ray walk, only used to fill the magic tables.
+         */
+        private static long slidingAttacks(int sq, long occ, int[][] directions) {
+            long attacks = 0L;
+            for (int[] d : directions) {
+                int r = (sq >> 3) + d[0];
+                int c = (sq & 7) + d[1];
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    long bit = 1L << (r * 8 + c);
+                    attacks |= bit;
+                    if ((occ & bit) != 0) break;
+                    r += d[0];
+                    c += d[1];
+                }
+            }
+            return attacks;
+        }
+
+        /**
+         * Blocker mask: the rays from sq without their last square, since a
+         * piece on the board edge can never shorten the ray any further.
+         */
+        private static long relevantMask(int sq, int[][] directions) {
+            long mask = 0L;
+            for (int[] d : directions) {
+                int r = (sq >> 3) + d[0];
+                int c = (sq & 7) + d[1];
+                while (r + d[0] >= 0 && r + d[0] < 8 && c + d[1] >= 0 && c + d[1] < 8) {
+                    mask |= 1L << (r * 8 + c);
+                    r += d[0];
+                    c += d[1];
+                }
+            }
+            return mask;
+        }
+
+        /**
+         * Fills the shared attack table for one slider type. The magic numbers
+         * above were found offline by trial multiplication (fixed-seed xorshift,
+         * rejecting any candidate that maps two blocker sets with different
+         * attacks to the same slot), so start-up only has to enumerate blockers.
+         */
+        private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+            int total = 0;
+            for (int sq = 0; sq < 64; sq++) {
+                masks[sq] = relevantMask(sq, directions);
+                shifts[sq] = 64 - Long.bitCount(masks[sq]);
+                offsets[sq] = total;
+                total += 1 << Long.bitCount(masks[sq]);
+            }
+
+            long[] table = new long[total];
+            for (int sq = 0; sq < 64; sq++) {
+                long mask = masks[sq];
+                long subset = 0L;
+                do { // Enumerate every subset of the mask (Carry-Rippler)
+                    int index = offsets[sq] + (int) ((subset * magics[sq]) >>> shifts[sq]);
+                    long attacks = slidingAttacks(sq, subset, directions);
+                    if (table[index] != 0L && table[index] != attacks) {
+                        throw new IllegalStateException("Bad magic number for square " + sq);
+                    }
+                    table[index] = attacks;
+                    subset = (subset - mask) & mask;
+                } while (subset != 0);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Random keys for Zobrist hashing. A position's key is the XOR of one key
+     * per (piece, square), the castling-rights key, the en passant file key
+     * (only when the side to move could actually capture) and the side key
+     * when Black is to move. Keys come from a fixed-seed SplitMix64 stream so
+     * hashes are stable across runs and can be stored.
+     */
+    static final class Zobrist {
+        static final long[] PIECES = new long[12 * 64]; // index: piece code * 64 + square
+        static final long[] CASTLING = new long[16];
+        static final long[] EN_PASSANT = new long[8];
+        static final long SIDE;
+
+        static {
+            long seed = 0x9E3779B97F4A7C15L;
+            for (int i = 0; i < PIECES.length; i++) PIECES[i] = splitMix(seed += 0x9E3779B97F4A7C15L);
+            for (int i = 1; i < CASTLING.length; i++) CASTLING[i] = splitMix(seed += 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < EN_PASSANT.length; i++) EN_PASSANT[i] = splitMix(seed += 0x9E3779B97F4A7C15L);
+            SIDE = splitMix(seed + 0x9E3779B97F4A7C15L);
+        }
+
+        private Zobrist() {}
+
+        private static long splitMix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * Picks the piece a pawn promotes to when a move is entered as just a
+     * from and to square. The UI supplies one that asks the player; without
+     * one the board promotes to a queen, so GameLogic never blocks or needs
+     * a display.
+     */
+    @FunctionalInterface
+    public interface PromotionChooser {
+        /**
+         * @return QUEEN, ROOK, BISHOP or KNIGHT
+         */
+        int choosePromotion(Player player, Position from, Position to);
+
+        PromotionChooser ALWAYS_QUEEN = (player, from, to) -> QUEEN;
+    }
+
+    /**
+     * Packed int move encoding used by the allocation-free move generator.
+     * Bits 0-5: from square, 6-11: to square, 12-15: flags,
+     * 16-18: promotion piece type (0 when the move is not a promotion).
+     */
+    public static final class Move {
+        public static final int NONE = 0;
+
+        public static final int CAPTURE = 1 << 12;
+        public static final int DOUBLE_PUSH = 2 << 12;
+        public static final int EN_PASSANT = 4 << 12;
+        public static final int CASTLING = 8 << 12;
+
+        private Move() {}
+
+        public static int of(int from, int to, int flags) {
+            return from | (to << 6) | flags;
+        }
+
+        public static int of(int from, int to, int flags, int promotion) {
+            return from | (to << 6) | flags | (promotion << 16);
+        }
+
+        public static int from(int move) { return move & 0x3F; }
+        public static int to(int move) { return (move >>> 6) & 0x3F; }
+        public static int promotion(int move) { return (move >>> 16) & 0x7; }
+        public static boolean isCapture(int move) { return (move & CAPTURE) != 0; }
+        public static boolean isEnPassant(int move) { return (move & EN_PASSANT) != 0; }
+        public static boolean isCastling(int move) { return (move & CASTLING) != 0; }
+        public static boolean isDoublePush(int move) { return (move & DOUBLE_PUSH) != 0; }
+
+        /**
+         * Coordinate notation, e.g. "e2e4" or "e7e8q".
+         */
+        public static String toString(int move) {
+            String s = Position.of(from(move)).toString() + Position.of(to(move));
+            int promotion = promotion(move);
+            return promotion == 0 ? s : s + "pnbrqk".charAt(promotion);
+        }
     }
 
     /**
      * Represents the game board and its state.
+     * The position is kept as one 64-bit bitboard per piece type and color plus
+     * occupancy masks; bit n stands for square n (see {@link Position#square()}).
+     * A small mailbox array mirrors the bitboards for constant-time getPieceAt.
      */
     public static class Board {
-        private Piece[][] board;
+        static final int NO_PIECE = -1;
+        static final int NO_SQUARE = -1;
+
+        static final int WHITE_KING_SIDE = 1;
+        static final int WHITE_QUEEN_SIDE = 2;
+        static final int BLACK_KING_SIDE = 4;
+        static final int BLACK_QUEEN_SIDE = 8;
+
+        static final long RANK_3 = 0xFFL << 40;
+        static final long RANK_6 = 0xFFL << 16;
+        static final long DARK_SQUARES = 0x55AA55AA55AA55AAL; // a1, c1, ..., b8
+
+        private static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
+
+        // Castling rights that survive a move touching each square (king and rook home squares clear bits)
+        private static final int[] CASTLING_MASK = new int[64];
+        static {
+            java.util.Arrays.fill(CASTLING_MASK, 0xF);
+            CASTLING_MASK[0] = ~BLACK_QUEEN_SIDE & 0xF;
+            CASTLING_MASK[4] = ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE) & 0xF;
+            CASTLING_MASK[7] = ~BLACK_KING_SIDE & 0xF;
+            CASTLING_MASK[56] = ~WHITE_QUEEN_SIDE & 0xF;
+            CASTLING_MASK[60] = ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE) & 0xF;
+            CASTLING_MASK[63] = ~WHITE_KING_SIDE & 0xF;
+        }
+
+        private final long[] pieceBitboards = new long[12]; // index: color * 6 + piece type
+        private final long[] colorBitboards = new long[2];
+        private long occupied;
+        private final int[] squares = new int[64];          // piece code per square, or NO_PIECE
+
         private Player currentPlayer;
         private boolean isGameOver;
         private String statusMessage;
-        
-        private boolean whiteKingSideCastle;
-        private boolean whiteQueenSideCastle;
-        private boolean blackKingSideCastle;
-        private boolean blackQueenSideCastle;
-        private Position enPassantTarget; 
-        private Position whiteKingPos;
-        private Position blackKingPos;
+
+        private int castlingRights;
+        private int enPassantSquare;
+        private final int[] kingSquares = new int[2];
+
+        // Reusable buffer for the List<Position> adapters in Piece
+        private final int[] scratchMoves = new int[256];
+
+        // Legal moves and check status of the current position, built on first use and
+        // kept until the position changes (tracked by its Zobrist key); not copied
+        private final int[] legalMoves = new int[256];
+        private int legalMoveCount;
+        private boolean legalMovesInCheck;
+        private long legalMovesHash;
+        private boolean legalMovesValid;
+
+        // Undo stack: one entry per move played with doMove, preallocated and grown on demand
+        private int[] undoMoves = new int[512];
+        private int[] undoCaptured = new int[512];
+        private int[] undoCastlingRights = new int[512];
+        private int[] undoEnPassant = new int[512];
+        private int[] undoKingSquares = new int[512];
+        private long[] undoHash = new long[512];
+        private int[] undoHalfMoveClock = new int[512];
+        private int ply;
+
+        private int halfMoveClock;      // plies since the last capture or pawn move
+        private int fullMoveNumber = 1; // starts at 1, incremented after Black's move
+
+        private long hash; // Zobrist key, kept up to date by the bitboard primitives and doMove
+
+        // Only consulted by makeMove(Position, Position); not copied, so snapshots stay headless
+        private PromotionChooser promotionChooser = PromotionChooser.ALWAYS_QUEEN;
 
         public Board() {
             setupNewGame();
         }
 
+        /**
+         * Deep copy, including the undo stack, for engines and worker threads
+         * that must not touch the board the UI is showing.
+         */
+        public Board(Board other) {
+            System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, 12);
+            System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, 2);
+            System.arraycopy(other.squares, 0, squares, 0, 64);
+            System.arraycopy(other.kingSquares, 0, kingSquares, 0, 2);
+            occupied = other.occupied;
+            currentPlayer = other.currentPlayer;
+            isGameOver = other.isGameOver;
+            statusMessage = other.statusMessage;
+            castlingRights = other.castlingRights;
+            enPassantSquare = other.enPassantSquare;
+            hash = other.hash;
+            ply = other.ply;
+            undoMoves = other.undoMoves.clone();
+            undoCaptured = other.undoCaptured.clone();
+            undoCastlingRights = other.undoCastlingRights.clone();
+            undoEnPassant = other.undoEnPassant.clone();
+            undoKingSquares = other.undoKingSquares.clone();
+            undoHash = other.undoHash.clone();
+            undoHalfMoveClock = other.undoHalfMoveClock.clone();
+            halfMoveClock = other.halfMoveClock;
+            fullMoveNumber = other.fullMoveNumber;
+        }
+
         public void setupNewGame() {
-            board = new Piece[8][8];
             currentPlayer = Player.WHITE;
             isGameOver = false;
             statusMessage = "White's turn.";
 
-            whiteKingSideCastle = true;
-            whiteQueenSideCastle = true;
-            blackKingSideCastle = true;
-            blackQueenSideCastle = true;
-            enPassantTarget = null;
-
-            for (int c = 0; c < 8; c++) {
-                board[1][c] = new Pawn(Player.BLACK);
-                board[6][c] = new Pawn(Player.WHITE);
-            }
-            board[0][0] = new Rook(Player.BLACK);
-            board[0][7] = new Rook(Player.BLACK);
-            board[7][0] = new Rook(Player.WHITE);
-            board[7][7] = new Rook(Player.WHITE);
-            board[0][1] = new Knight(Player.BLACK);
-            board[0][6] = new Knight(Player.BLACK);
-            board[7][1] = new Knight(Player.WHITE);
-            board[7][6] = new Knight(Player.WHITE);
-            board[0][2] = new Bishop(Player.BLACK);
-            board[0][5] = new Bishop(Player.BLACK);
-            board[7][2] = new Bishop(Player.WHITE);
-            board[7][5] = new Bishop(Player.WHITE);
-            board[0][3] = new Queen(Player.BLACK);
-            board[7][3] = new Queen(Player.WHITE);
-            board[0][4] = new King(Player.BLACK);
-            board[7][4] = new King(Player.WHITE);
-            
-            whiteKingPos = new Position(7, 4);
-            blackKingPos = new Position(0, 4);
+            castlingRights = WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE;
+            enPassantSquare = NO_SQUARE;
+
+            loadBoardStateString(START_POSITION);
+            halfMoveClock = 0;
+            fullMoveNumber = 1;
         }
 
         /**
          * Gets all valid moves for a piece at a given position.
          */
         public List<Position> getValidMovesForPiece(Position fromPos) {
-            Piece piece = getPieceAt(fromPos);
-            if (piece == null || piece.getPlayer() != currentPlayer) {
-                return new ArrayList<>();
+            List<Position> targets = new ArrayList<>();
+            if (!fromPos.isValid()) return targets;
+            ensureLegalMoves();
+            int from = fromPos.square();
+            for (int i = 0; i < legalMoveCount; i++) {
+                int move = legalMoves[i];
+                // One target per promotion square, not one per promotion piece
+                if (Move.from(move) == from && (Move.promotion(move) == 0 || Move.promotion(move) == QUEEN)) {
+                    targets.add(Position.of(Move.to(move)));
+                }
             }
-            return piece.getValidMoves(fromPos, this);
+            return targets;
+        }
+
+        /**
+         * Whether the side to move is in check. Cached with the legal moves.
+         */
+        public boolean isInCheck() {
+            ensureLegalMoves();
+            return legalMovesInCheck;
         }
 
         /**
-         * Attempts to make a move. Assumes the move is valid.
+         * Number of legal moves for the side to move. Cached per position.
+         */
+        public int getLegalMoveCount() {
+            ensureLegalMoves();
+            return legalMoveCount;
+        }
+
+        /**
+         * Index of the legal move from one square to another in the cached list,
+         * the first promotion piece for promotions, or -1.
+         */
+        private int findLegalMove(int from, int to) {
+            ensureLegalMoves();
+            for (int i = 0; i < legalMoveCount; i++) {
+                if (Move.from(legalMoves[i]) == from && Move.to(legalMoves[i]) == to) return i;
+            }
+            return -1;
+        }
+
+        private void ensureLegalMoves() {
+            if (legalMovesValid && legalMovesHash == hash) return;
+            legalMoveCount = generateLegalMoves(legalMoves, 0);
+            legalMovesInCheck = isKingInCheck(currentPlayer);
+            legalMovesHash = hash;
+            legalMovesValid = true;
+        }
+
+        /**
+         * Attempts to make a move chosen in the UI. Returns false if the game is
+         * over or the move is not legal for the side to move.
          */
         public boolean makeMove(Position fromPos, Position toPos) {
             if (isGameOver) return false;
 
-            Piece pieceToMove = getPieceAt(fromPos);
-            Piece capturedPiece = getPieceAt(toPos);
-            
-            // Apply the move
-            setPieceAt(toPos, pieceToMove);
-            setPieceAt(fromPos, null);
-
-            // Handle En Passant Capture
-            if (pieceToMove instanceof Pawn && toPos.equals(enPassantTarget)) {
-                int capturedPawnRow = (currentPlayer == Player.WHITE) ? toPos.row + 1 : toPos.row - 1;
-                setPieceAt(new Position(capturedPawnRow, toPos.col), null);
-            }
-
-            // Set new En Passant Target
-            enPassantTarget = null;
-            if (pieceToMove instanceof Pawn && Math.abs(fromPos.row - toPos.row) == 2) {
-                enPassantTarget = new Position((fromPos.row + toPos.row) / 2, fromPos.col);
-            }
-            
-            // Handle Castling
-            if (pieceToMove instanceof King && Math.abs(fromPos.col - toPos.col) == 2) {
-                if (toPos.col == 6) { // King-side
-                    Piece rook = getPieceAt(new Position(fromPos.row, 7));
-                    setPieceAt(new Position(fromPos.row, 5), rook);
-                    setPieceAt(new Position(fromPos.row, 7), null);
-                } else { // Queen-side
-                    Piece rook = getPieceAt(new Position(fromPos.row, 0));
-                    setPieceAt(new Position(fromPos.row, 3), rook);
-                    setPieceAt(new Position(fromPos.row, 0), null);
-                }
+            int from = fromPos.square();
+            int to = toPos.square();
+            int index = findLegalMove(from, to);
+            if (index < 0) return false;
+            int move = legalMoves[index];
+
+            // Handle Pawn Promotion
+            if (Move.promotion(move) != 0) {
+                int type = promotionChooser.choosePromotion(currentPlayer, fromPos, toPos);
+                move = Move.of(from, to, move & 0xF000, isPromotionType(type) ? type : QUEEN);
             }
-            
-            // Update King Position
-            if (pieceToMove instanceof King) {
-                if (currentPlayer == Player.WHITE) whiteKingPos = toPos;
-                else blackKingPos = toPos;
-            }
-            
-            // Update Castling Rights
-            if (pieceToMove instanceof King) {
-                if (currentPlayer == Player.WHITE) {
-                    whiteKingSideCastle = false;
-                    whiteQueenSideCastle = false;
-                } else {
-                    blackKingSideCastle = false;
-                    blackQueenSideCastle = false;
+
+            return makeMove(move);
+        }
+
+        /**
+         * Same as makeMove(fromPos, toPos), but with the promotion piece given
+         * up front instead of asking the chooser. The type is ignored when the
+         * move is not a promotion; a promotion to anything but a queen, rook,
+         * bishop or knight is rejected.
+         */
+        public boolean makeMove(Position fromPos, Position toPos, int promotionType) {
+            if (isGameOver) return false;
+            int from = fromPos.square();
+            int to = toPos.square();
+            ensureLegalMoves();
+            for (int i = 0; i < legalMoveCount; i++) {
+                int move = legalMoves[i];
+                if (Move.from(move) == from && Move.to(move) == to && (Move.promotion(move) == 0
+                        || (isPromotionType(promotionType) && Move.promotion(move) == promotionType))) {
+                    doMove(move);
+                    updateGameStatus();
+                    return true;
                 }
             }
-            if (pieceToMove instanceof Rook) {
-                if (currentPlayer == Player.WHITE) {
-                    if (fromPos.equals(new Position(7, 0))) whiteQueenSideCastle = false;
-                    if (fromPos.equals(new Position(7, 7))) whiteKingSideCastle = false;
-                } else {
-                    if (fromPos.equals(new Position(0, 0))) blackQueenSideCastle = false;
-                    if (fromPos.equals(new Position(0, 7))) blackKingSideCastle = false;
+            return false;
+        }
+
+        public void setPromotionChooser(PromotionChooser chooser) {
+            this.promotionChooser = chooser != null ? chooser : PromotionChooser.ALWAYS_QUEEN;
+        }
+
+        public PromotionChooser getPromotionChooser() { return promotionChooser; }
+
+        private static boolean isPromotionType(int type) {
+            return type == QUEEN || type == ROOK || type == BISHOP || type == KNIGHT;
+        }
+
+        /**
+         * Plays a packed move (e.g. one chosen by the engine) if it is legal
+         * for the side to move, and updates the game status.
+         */
+        public boolean makeMove(int move) {
+            if (isGameOver) return false;
+            ensureLegalMoves();
+            for (int i = 0; i < legalMoveCount; i++) {
+                if (legalMoves[i] == move) {
+                    doMove(move);
+                    updateGameStatus();
+                    return true;
                 }
             }
-            
-            // Handle Pawn Promotion
-            if (pieceToMove instanceof Pawn) {
-                if ((currentPlayer == Player.WHITE && toPos.row == 0) || (currentPlayer == Player.BLACK && toPos.row == 7)) {
-                    promotePawn(toPos);
-                }
+            return false;
+        }
+
+        /**
+         * Finds the legal move written in UCI notation ("e2e4", "e7e8q").
+         * @return the packed move, or Move.NONE if it is not legal here
+         */
+        public int parseUciMove(String uci) {
+            if (uci == null) return Move.NONE;
+            ensureLegalMoves();
+            for (int i = 0; i < legalMoveCount; i++) {
+                if (Move.toString(legalMoves[i]).equals(uci)) return legalMoves[i];
             }
+            return Move.NONE;
+        }
+
+        /**
+         * Moves played on this board since it was set up or loaded, oldest first.
+         */
+        public int[] getMoveHistory() {
+            return java.util.Arrays.copyOf(undoMoves, ply);
+        }
 
-            // Switch player
-            currentPlayer = (currentPlayer == Player.WHITE) ? Player.BLACK : Player.WHITE;
+        /**
+         * Full FEN of the position the move history starts from.
+         */
+        public String getStartFen() {
+            Board start = new Board(this);
+            while (start.ply > 0) start.undoMove();
+            return start.getFen();
+        }
 
-            // Check for Checkmate / Stalemate
-            if (isCheckmate(currentPlayer)) {
+        /**
+         * Takes back the last move played on this board, if any.
+         */
+        public boolean takeBack() {
+            if (ply == 0) return false;
+            undoMove();
+            isGameOver = false;
+            updateGameStatus();
+            return true;
+        }
+
+        public boolean canTakeBack() { return ply > 0; }
+
+        /**
+         * Recomputes the game status from the position, e.g. after a game was
+         * replayed with doMove. A draw that was claimed earlier is not restored.
+         */
+        public void refreshGameStatus() {
+            isGameOver = false;
+            updateGameStatus();
+        }
+
+        /**
+         * Whether the side to move may claim a draw: the position occurred three
+         * times, or 100 plies passed without a capture or pawn move.
+         */
+        public boolean canClaimDraw() {
+            return !isGameOver && (isThreefoldRepetition() || isFiftyMoveDraw());
+        }
+
+        /**
+         * Ends the game as a draw if one can be claimed.
+         * @return false if no draw could be claimed
+         */
+        public boolean claimDraw() {
+            if (!canClaimDraw()) return false;
+            statusMessage = isThreefoldRepetition() ? "Draw by threefold repetition." : "Draw by the fifty-move rule.";
+            isGameOver = true;
+            return true;
+        }
+
+        private void updateGameStatus() {
+            // Check for Checkmate / Stalemate, from one legal move list shared with the UI
+            ensureLegalMoves();
+            if (legalMoveCount == 0 && legalMovesInCheck) {
                 statusMessage = "Checkmate! " + (currentPlayer == Player.WHITE ? "Black" : "White") + " wins!";
                 isGameOver = true;
-            } else if (isStalemate(currentPlayer)) {
+            } else if (legalMoveCount == 0) {
                 statusMessage = "Stalemate! It's a draw.";
                 isGameOver = true;
-            } else if (isKingInCheck(currentPlayer)) {
-                statusMessage = currentPlayer + " is in check!";
+            } else if (isInsufficientMaterial()) {
+                statusMessage = "Draw by insufficient material.";
+                isGameOver = true;
+            } else if (isFivefoldRepetition()) {
+                statusMessage = "Draw by fivefold repetition.";
+                isGameOver = true;
+            } else if (isSeventyFiveMoveDraw()) {
+                statusMessage = "Draw by the seventy-five-move rule.";
+                isGameOver = true;
             } else {
-                statusMessage = currentPlayer + "'s turn.";
+                // Threefold repetition and the fifty-move rule only draw when claimed
+                statusMessage = currentPlayer + (legalMovesInCheck ? " is in check!" : "'s turn.");
+                if (isThreefoldRepetition()) {
+                    statusMessage += " Threefold repetition: a draw can be claimed.";
+                } else if (isFiftyMoveDraw()) {
+                    statusMessage += " Fifty-move rule: a draw can be claimed.";
+                }
             }
+        }
 
-            return true;
+        /**
+         * Plays a move from the generator without any legality check or status
+         * update. Everything needed to reverse it is pushed on the undo stack,
+         * so this never copies the board and allocates only when the stack grows.
+         */
+        public void doMove(int move) {
+            int from = Move.from(move);
+            int to = Move.to(move);
+            int us = squares[from] / 6; // the mover, which need not be the side to move (see isLegal)
+
+            if (ply == undoMoves.length) {
+                growUndoStack();
+            }
+            undoMoves[ply] = move;
+            undoCastlingRights[ply] = castlingRights;
+            undoEnPassant[ply] = enPassantSquare;
+            undoKingSquares[ply] = kingSquares[0] | (kingSquares[1] << 6);
+            undoHash[ply] = hash;
+            undoHalfMoveClock[ply] = halfMoveClock;
+            hash ^= Zobrist.CASTLING[castlingRights] ^ enPassantKey();
+
+            // Captures and pawn moves are irreversible and reset the fifty-move count
+            halfMoveClock = (squares[from] % 6 == PAWN || Move.isCapture(move)) ? 0 : halfMoveClock + 1;
+            if (us == 1) fullMoveNumber++;
+
+            // Apply the move, removing any captured piece first
+            int captured = NO_PIECE;
+            if (Move.isEnPassant(move)) {
+                int victimSquare = (us == 0) ? to + 8 : to - 8;
+                captured = squares[victimSquare];
+                removePiece(victimSquare);
+            } else if (squares[to] != NO_PIECE) {
+                captured = squares[to];
+                removePiece(to);
+            }
+            undoCaptured[ply] = captured;
+            ply++;
+            movePiece(from, to);
+
+            int promotion = Move.promotion(move);
+            if (promotion != 0) {
+                removePiece(to);
+                putPiece(to, us * 6 + promotion);
+            }
+
+            // Castling moves the rook as well
+            if (Move.isCastling(move)) {
+                if (to > from) { // King-side
+                    movePiece(from + 3, from + 1);
+                } else { // Queen-side
+                    movePiece(from - 4, from - 1);
+                }
+            }
+
+            enPassantSquare = Move.isDoublePush(move) ? (from + to) / 2 : NO_SQUARE;
+
+            // A king or rook leaving home, or a rook being captured, loses castling rights
+            castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+
+            currentPlayer = currentPlayer.opponent();
+            hash ^= Zobrist.CASTLING[castlingRights] ^ enPassantKey() ^ Zobrist.SIDE;
+        }
+
+        /**
+         * Reverses the last {@link #doMove}.
+         */
+        public void undoMove() {
+            ply--;
+            int move = undoMoves[ply];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            currentPlayer = currentPlayer.opponent();
+            int us = squares[to] / 6;
+
+            if (Move.isCastling(move)) {
+                if (to > from) {
+                    movePiece(from + 1, from + 3);
+                } else {
+                    movePiece(from - 1, from - 4);
+                }
+            }
+
+            if (Move.promotion(move) != 0) {
+                removePiece(to);
+                putPiece(to, us * 6 + PAWN);
+            }
+            movePiece(to, from);
+
+            int captured = undoCaptured[ply];
+            if (captured != NO_PIECE) {
+                putPiece(Move.isEnPassant(move) ? ((us == 0) ? to + 8 : to - 8) : to, captured);
+            }
+
+            castlingRights = undoCastlingRights[ply];
+            enPassantSquare = undoEnPassant[ply];
+            kingSquares[0] = undoKingSquares[ply] & 0x3F;
+            kingSquares[1] = undoKingSquares[ply] >>> 6;
+            hash = undoHash[ply];
+            halfMoveClock = undoHalfMoveClock[ply];
+            if (us == 1) fullMoveNumber--;
+        }
+
+        /**
+         * Number of moves on the undo stack.
+         */
+        public int getPly() { return ply; }
+
+        public int getLastMove() {
+            return ply == 0 ? Move.NONE : undoMoves[ply - 1];
+        }
+
+        /** Code of the piece the last move captured, or NO_PIECE. */
+        int getLastCaptured() {
+            return ply == 0 ? NO_PIECE : undoCaptured[ply - 1];
+        }
+
+        /**
+         * 64-bit Zobrist key of the current position (pieces, side to move,
+         * castling rights and en passant file). Updated incrementally.
+         */
+        public long getHash() { return hash; }
+
+        /**
+         * Recomputes the Zobrist key from scratch.
+         */
+        public long computeHash() {
+            long h = 0L;
+            long pieces = occupied;
+            while (pieces != 0) {
+                int sq = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                h ^= Zobrist.PIECES[squares[sq] * 64 + sq];
+            }
+            h ^= Zobrist.CASTLING[castlingRights] ^ enPassantKey();
+            if (currentPlayer == Player.BLACK) h ^= Zobrist.SIDE;
+            return h;
+        }
+
+        /**
+         * The en passant file only counts when a pawn of the side to move can
+         * make the capture, so transpositions that differ only in an unusable
+         * en passant square share a key.
+         */
+        private long enPassantKey() {
+            if (enPassantSquare == NO_SQUARE) return 0L;
+            int stm = currentPlayer.ordinal();
+            if ((Attacks.pawn(stm ^ 1, enPassantSquare) & pieceBitboards[stm * 6 + PAWN]) == 0) return 0L;
+            return Zobrist.EN_PASSANT[enPassantSquare & 7];
+        }
+
+        private void growUndoStack() {
+            int size = undoMoves.length * 2;
+            undoMoves = java.util.Arrays.copyOf(undoMoves, size);
+            undoCaptured = java.util.Arrays.copyOf(undoCaptured, size);
+            undoCastlingRights = java.util.Arrays.copyOf(undoCastlingRights, size);
+            undoEnPassant = java.util.Arrays.copyOf(undoEnPassant, size);
+            undoKingSquares = java.util.Arrays.copyOf(undoKingSquares, size);
+            undoHash = java.util.Arrays.copyOf(undoHash, size);
+            undoHalfMoveClock = java.util.Arrays.copyOf(undoHalfMoveClock, size);
         }
 
         public boolean isKingInCheck(Player player) {
-            Position kingPos = (player == Player.WHITE) ? whiteKingPos : blackKingPos;
-            Player opponent = (player == Player.WHITE) ? Player.BLACK : Player.WHITE;
-            return isSquareAttackedBy(kingPos, opponent);
+            int us = player.ordinal();
+            return isSquareAttacked(kingSquares[us], us ^ 1);
         }
 
         public boolean isSquareAttackedBy(Position pos, Player attackerPlayer) {
-            for (int r = 0; r < 8; r++) {
-                for (int c = 0; c < 8; c++) {
-                    Piece attacker = getPieceAt(new Position(r, c));
-                    if (attacker != null && attacker.getPlayer() == attackerPlayer) {
-                        List<Position> moves = attacker.getRawMoves(new Position(r, c), this);
-                        for (Position move : moves) {
-                            if (move.equals(pos)) {
-                                return true;
-                            }
-                        }
+            return isSquareAttacked(pos.square(), attackerPlayer.ordinal());
+        }
+
+        boolean isSquareAttacked(int sq, int by) {
+            long queens = pieceBitboards[by * 6 + QUEEN];
+            return (Attacks.pawn(by ^ 1, sq) & pieceBitboards[by * 6 + PAWN]) != 0
+                || (Attacks.knight(sq) & pieceBitboards[by * 6 + KNIGHT]) != 0
+                || (Attacks.king(sq) & pieceBitboards[by * 6 + KING]) != 0
+                || (Attacks.bishop(sq, occupied) & (pieceBitboards[by * 6 + BISHOP] | queens)) != 0
+                || (Attacks.rook(sq, occupied) & (pieceBitboards[by * 6 + ROOK] | queens)) != 0;
+        }
+
+        public boolean hasLegalMoves(Player player) {
+            if (player == currentPlayer) return getLegalMoveCount() > 0;
+            long own = colorBitboards[player.ordinal()];
+            int[] buffer = scratchMoves;
+            while (own != 0) {
+                int sq = Long.numberOfTrailingZeros(own);
+                own &= own - 1;
+                int count = Piece.forCode(squares[sq]).generateMoves(sq, this, buffer, 0);
+                for (int i = 0; i < count; i++) {
+                    if (isLegal(buffer[i])) {
+                        return true;
                     }
                 }
             }
             return false;
         }
 
-        public boolean hasLegalMoves(Player player) {
-            for (int r = 0; r < 8; r++) {
-                for (int c = 0; c < 8; c++) {
-                    Piece p = getPieceAt(new Position(r, c));
-                    if (p != null && p.getPlayer() == player) {
-                        List<Position> validMoves = p.getValidMoves(new Position(r, c), this);
-                        if (!validMoves.isEmpty()) {
-                            return true;
-                        }
-                    }
+        /**
+         * Writes all pseudo-legal moves for the side to move into moves[count...]
+         * and returns the new count. Castling is only generated when it is fully
+         * legal; other moves may still leave the king in check (see {@link #isLegal}).
+         * A buffer of 256 entries per ply is always enough.
+         */
+        public int generateMoves(int[] moves, int count) {
+            long own = colorBitboards[currentPlayer.ordinal()];
+            while (own != 0) {
+                int sq = Long.numberOfTrailingZeros(own);
+                own &= own - 1;
+                count = Piece.forCode(squares[sq]).generateMoves(sq, this, moves, count);
+            }
+            return count;
+        }
+
+        /**
+         * Like {@link #generateMoves} but only keeps moves that do not leave the king in check.
+         */
+        public int generateLegalMoves(int[] moves, int count) {
+            int end = generateMoves(moves, count);
+            for (int i = count; i < end; i++) {
+                if (isLegal(moves[i])) {
+                    moves[count++] = moves[i];
                 }
             }
-            return false;
+            return count;
+        }
+
+        /**
+         * Pseudo-legal captures and queen promotions only, for quiescence search.
+         */
+        public int generateCaptures(int[] moves, int count) {
+            int end = generateMoves(moves, count);
+            for (int i = count; i < end; i++) {
+                int move = moves[i];
+                int promotion = Move.promotion(move);
+                if ((promotion == 0 && Move.isCapture(move)) || promotion == QUEEN) {
+                    moves[count++] = move;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Whether a pseudo-legal move from the generator keeps the mover's king safe.
+         * The mover is the colour of the piece on the from-square, so this also
+         * answers for the side not to move (Piece.getValidMoves, hasLegalMoves).
+         */
+        public boolean isLegal(int move) {
+            if (Move.isCastling(move)) return true;
+            int us = squares[Move.from(move)] / 6;
+            doMove(move);
+            boolean safe = !isSquareAttacked(kingSquares[us], us ^ 1);
+            undoMove();
+            return safe;
         }
 
         public boolean isCheckmate(Player player) {
+            if (player == currentPlayer) return getLegalMoveCount() == 0 && legalMovesInCheck;
             return isKingInCheck(player) && !hasLegalMoves(player);
         }
 
         public boolean isStalemate(Player player) {
+            if (player == currentPlayer) return getLegalMoveCount() == 0 && !legalMovesInCheck;
             return !isKingInCheck(player) && !hasLegalMoves(player);
         }
-        
-        private void promotePawn(Position pos) {
-            String[] options = {"Queen", "Rook", "Bishop", "Knight"};
-            int choice = JOptionPane.showOptionDialog(null, 
-                "Promote pawn to:",
-                "Pawn Promotion",
-                JOptionPane.DEFAULT_OPTION,
-                JOptionPane.PLAIN_MESSAGE,
-                null, options, options[0]);
-            
-            Player player = (pos.row == 0) ? Player.WHITE : Player.BLACK;
-            switch (choice) {
-                case 0: default: setPieceAt(pos, new Queen(player)); break;
-                case 1: setPieceAt(pos, new Rook(player)); break;
-                case 2: setPieceAt(pos, new Bishop(player)); break;
-                case 3: setPieceAt(pos, new Knight(player)); break;
-            }
-        }
-        
+
+        // --- Draw rules ---
+
+        /**
+         * How often the current position occurred earlier in the game. The
+         * Zobrist keys of earlier positions are on the undo stack, and only the
+         * last halfMoveClock of them can match: a capture or pawn move resets
+         * the clock, so the scan starts after the last irreversible move.
+         */
+        public int getRepetitionCount() {
+            int count = 0;
+            int start = Math.max(0, ply - halfMoveClock);
+            for (int i = ply - 4; i >= start; i -= 2) {
+                if (undoHash[i] == hash) count++;
+            }
+            return count;
+        }
+
+        /**
+         * Whether the position occurred before at all; what the search treats as a draw.
+         */
+        public boolean isRepetition() {
+            int start = Math.max(0, ply - halfMoveClock);
+            for (int i = ply - 4; i >= start; i -= 2) {
+                if (undoHash[i] == hash) return true;
+            }
+            return false;
+        }
+
+        /** Third occurrence of the position: a draw the side to move may claim. */
+        public boolean isThreefoldRepetition() {
+            return getRepetitionCount() >= 2;
+        }
+
+        /** Fifth occurrence of the position: the game is drawn without a claim. */
+        public boolean isFivefoldRepetition() {
+            return getRepetitionCount() >= 4;
+        }
+
+        /**
+         * 100 plies without a capture or pawn move: a draw the side to move may
+         * claim. A mate on the last of them still counts; makeMove checks for mate first.
+         */
+        public boolean isFiftyMoveDraw() {
+            return halfMoveClock >= 100;
+        }
+
+        /** 150 plies without a capture or pawn move: drawn without a claim, unless the last one mates. */
+        public boolean isSeventyFiveMoveDraw() {
+            return halfMoveClock >= 150;
+        }
+
+        /**
+         * Neither side can ever mate: no pawns, rooks or queens, and at most one
+         * minor piece, or only bishops that all stand on squares of one colour.
+         */
+        public boolean isInsufficientMaterial() {
+            long heavy = pieceBitboards[PAWN] | pieceBitboards[ROOK] | pieceBitboards[QUEEN]
+                | pieceBitboards[6 + PAWN] | pieceBitboards[6 + ROOK] | pieceBitboards[6 + QUEEN];
+            if (heavy != 0) return false;
+            long knights = pieceBitboards[KNIGHT] | pieceBitboards[6 + KNIGHT];
+            long bishops = pieceBitboards[BISHOP] | pieceBitboards[6 + BISHOP];
+            if (Long.bitCount(knights | bishops) <= 1) return true;
+            return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+        }
+
+        // --- Bitboard primitives ---
+
+        private void putPiece(int sq, int code) {
+            long bit = 1L << sq;
+            pieceBitboards[code] |= bit;
+            colorBitboards[code / 6] |= bit;
+            occupied |= bit;
+            squares[sq] = code;
+            hash ^= Zobrist.PIECES[code * 64 + sq];
+            if (code % 6 == KING) kingSquares[code / 6] = sq;
+        }
+
+        private void removePiece(int sq) {
+            int code = squares[sq];
+            long bit = ~(1L << sq);
+            pieceBitboards[code] &= bit;
+            colorBitboards[code / 6] &= bit;
+            occupied &= bit;
+            squares[sq] = NO_PIECE;
+            hash ^= Zobrist.PIECES[code * 64 + sq];
+        }
+
+        private void movePiece(int from, int to) {
+            int code = squares[from];
+            long fromTo = (1L << from) | (1L << to);
+            pieceBitboards[code] ^= fromTo;
+            colorBitboards[code / 6] ^= fromTo;
+            occupied ^= fromTo;
+            squares[from] = NO_PIECE;
+            squares[to] = code;
+            hash ^= Zobrist.PIECES[code * 64 + from] ^ Zobrist.PIECES[code * 64 + to];
+            if (code % 6 == KING) kingSquares[code / 6] = to;
+        }
+
+        private void clearBoard() {
+            java.util.Arrays.fill(pieceBitboards, 0L);
+            colorBitboards[0] = 0L;
+            colorBitboards[1] = 0L;
+            occupied = 0L;
+            java.util.Arrays.fill(squares, NO_PIECE);
+        }
+
+        long getPieces(Player player, int type) { return pieceBitboards[player.ordinal() * 6 + type]; }
+        long getOccupancy(Player player) { return colorBitboards[player.ordinal()]; }
+        long getOccupied() { return occupied; }
+        int getPieceCode(int sq) { return squares[sq]; }
+        int getEnPassantSquare() { return enPassantSquare; }
+        int getCastlingRights() { return castlingRights; }
+        int[] getScratchMoves() { return scratchMoves; }
+
         // --- Getters and Setters ---
-        
+
         public Piece getPieceAt(Position pos) {
             if (!pos.isValid()) return null;
-            return board[pos.row][pos.col];
+            int code = squares[pos.row * 8 + pos.col];
+            return code == NO_PIECE ? null : Piece.forCode(code);
         }
 
         public void setPieceAt(Position pos, Piece piece) {
             if (!pos.isValid()) return;
-            board[pos.row][pos.col] = piece;
+            int sq = pos.square();
+            if (squares[sq] != NO_PIECE) removePiece(sq);
+            if (piece != null) putPiece(sq, piece.getCode());
+            hash = computeHash();
         }
 
         public boolean getKingSideCastle(Player player) {
-            return (player == Player.WHITE) ? whiteKingSideCastle : blackKingSideCastle;
+            return (castlingRights & (player == Player.WHITE ? WHITE_KING_SIDE : BLACK_KING_SIDE)) != 0;
         }
-        
+
         public boolean getQueenSideCastle(Player player) {
-            return (player == Player.WHITE) ? whiteQueenSideCastle : blackQueenSideCastle;
+            return (castlingRights & (player == Player.WHITE ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE)) != 0;
         }
-        
+
         public Position getKingPos(Player player) {
-            return (player == Player.WHITE) ? whiteKingPos : blackKingPos;
+            return Position.of(kingSquares[player.ordinal()]);
+        }
+
+        public Position getEnPassantTarget() {
+            return enPassantSquare == NO_SQUARE ? null : Position.of(enPassantSquare);
         }
-        
-        public Position getEnPassantTarget() { return enPassantTarget; }
         public boolean isGameOver() { return isGameOver; }
         public String getStatusMessage() { return statusMessage; }
         public Player getCurrentPlayer() { return currentPlayer; }
-        
+
         // --- Database Serialization/Deserialization ---
-        
+
         /**
          * Serializes the board state to a FEN-like string.
          * e.g., "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR"
          */
         public String getBoardStateString() {
-            StringBuilder sb = new StringBuilder();
+            StringBuilder sb = new StringBuilder(72);
             for (int r = 0; r < 8; r++) {
                 int emptyCount = 0;
                 for (int c = 0; c < 8; c++) {
-                    Piece p = board[r][c];
-                    if (p == null) {
+                    int code = squares[r * 8 + c];
+                    if (code == NO_PIECE) {
                         emptyCount++;
                     } else {
                         if (emptyCount > 0) {
                             sb.append(emptyCount);
                             emptyCount = 0;
                         }
-                        sb.append(p.getSymbol());
+                        sb.append(Piece.forCode(code).getSymbol());
                     }
                 }
                 if (emptyCount > 0) {
                     sb.append(emptyCount);
                 }
                 if (r < 7) {
-                    sb.append("/");
+                    sb.append('/');
                 }
             }
             return sb.toString();
         }
 
         /**
-         * Loads the board state from a FEN-like string.
+         * Loads the board state from a FEN-like string. The placement field is
+         * required; side to move, castling rights, en passant square and the
+         * half-move / full-move clocks are read too when present (full FEN).
          */
         public void loadBoardStateString(String fen) {
-            board = new Piece[8][8]; // Clear board
+            String[] fields = fen.trim().split("\\s+");
+            String placement = fields[0];
+            clearBoard();
+            ply = 0; // the history no longer matches this position
             int r = 0, c = 0;
-            for (char ch : fen.toCharArray()) {
+            for (int i = 0; i < placement.length(); i++) {
+                char ch = placement.charAt(i);
                 if (ch == '/') {
                     r++;
                     c = 0;
-                } else if (Character.isDigit(ch)) {
-                    c += Character.getNumericValue(ch);
+                } else if (ch >= '1' && ch <= '8') {
+                    c += ch - '0';
                 } else {
-                    Player player = Character.isUpperCase(ch) ? Player.WHITE : Player.BLACK;
-                    switch (Character.toLowerCase(ch)) {
-                        case 'p': board[r][c] = new Pawn(player); break;
-                        case 'r': board[r][c] = new Rook(player); break;
-                        case 'n': board[r][c] = new Knight(player); break;
-                        case 'b': board[r][c] = new Bishop(player); break;
-                        case 'q': board[r][c] = new Queen(player); break;
-                        case 'k': 
-                            board[r][c] = new King(player); 
-                            if(player == Player.WHITE) whiteKingPos = new Position(r,c);
-                            else blackKingPos = new Position(r,c);
-                            break;
+                    int color = Character.isUpperCase(ch) ? 0 : 1;
+                    int type = "pnbrqk".indexOf(Character.toLowerCase(ch));
+                    if (type >= 0 && r < 8 && c < 8) {
+                        putPiece(r * 8 + c, color * 6 + type);
                     }
                     c++;
                 }
             }
+
+            halfMoveClock = 0;
+            fullMoveNumber = 1;
+            if (fields.length > 1) {
+                currentPlayer = fields[1].equalsIgnoreCase("b") ? Player.BLACK : Player.WHITE;
+            }
+            if (fields.length > 2) {
+                loadCastlingRightsString(fields[2]);
+            }
+            if (fields.length > 3) {
+                Position ep = Position.fromString(fields[3]);
+                enPassantSquare = ep == null ? NO_SQUARE : ep.square();
+            }
+            try {
+                if (fields.length > 4) halfMoveClock = Math.max(0, Integer.parseInt(fields[4]));
+                if (fields.length > 5) fullMoveNumber = Math.max(1, Integer.parseInt(fields[5]));
+            } catch (NumberFormatException e) {
+                // Malformed clocks: keep the defaults
+            }
+            validateEnPassant();
+            hash = computeHash();
+        }
+
+        /**
+         * Full FEN: placement, side to move, castling, en passant and both clocks.
+         */
+        public String getFen() {
+            Position ep = getEnPassantTarget();
+            return getBoardStateString() + (currentPlayer == Player.WHITE ? " w " : " b ")
+                + getCastlingRightsString() + " " + (ep == null ? "-" : ep.toString())
+                + " " + halfMoveClock + " " + fullMoveNumber;
+        }
+
+        public int getHalfMoveClock() { return halfMoveClock; }
+        public int getFullMoveNumber() { return fullMoveNumber; }
+
+        public void setMoveClocks(int halfMoveClock, int fullMoveNumber) {
+            this.halfMoveClock = Math.max(0, halfMoveClock);
+            this.fullMoveNumber = Math.max(1, fullMoveNumber);
+        }
+
+        // --- Binary Encoding ---
+
+        /** Largest encoded position: 13 header bytes plus 32 pieces at 4 bits each. */
+        public static final int MAX_BINARY_LENGTH = 29;
+
+        /**
+         * Compact binary form of the position, 13 to 29 bytes:
+         * <pre>
+         *  0-7   occupancy bitmap (bit n = square n, a8 = 0), big-endian
+         *  8     bit 0: side to move (1 = Black), bits 1-4: castling rights
+         *  9     en passant file + 1, or 0 for none
+         *  10    half-move clock (saturates at 255)
+         *  11-12 full-move number, big-endian (saturates at 65535)
+         *  13-   one 4-bit piece code (color * 6 + type) per occupied square,
+         *        in square order, high nibble first
+         * </pre>
+         * The move history is not included.
+         */
+        public byte[] toBinary() {
+            byte[] out = new byte[13 + (Long.bitCount(occupied) + 1) / 2];
+            encodeBinary(out, 0);
+            return out;
+        }
+
+        /**
+         * Writes the binary form into dst without allocating.
+         * @return the number of bytes written
+         */
+        public int encodeBinary(byte[] dst, int offset) {
+            long occ = occupied;
+            for (int i = 0; i < 8; i++) {
+                dst[offset + i] = (byte) (occ >>> (56 - 8 * i));
+            }
+            dst[offset + 8] = (byte) ((currentPlayer == Player.BLACK ? 1 : 0) | castlingRights << 1);
+            dst[offset + 9] = (byte) (enPassantSquare == NO_SQUARE ? 0 : (enPassantSquare & 7) + 1);
+            dst[offset + 10] = (byte) Math.min(halfMoveClock, 255);
+            int fullMove = Math.min(fullMoveNumber, 0xFFFF);
+            dst[offset + 11] = (byte) (fullMove >>> 8);
+            dst[offset + 12] = (byte) fullMove;
+
+            int pos = offset + 13;
+            boolean high = true;
+            for (long bits = occ; bits != 0; bits &= bits - 1) {
+                int code = squares[Long.numberOfTrailingZeros(bits)];
+                if (high) {
+                    dst[pos] = (byte) (code << 4);
+                } else {
+                    dst[pos++] |= (byte) code;
+                }
+                high = !high;
+            }
+            return (high ? pos : pos + 1) - offset;
+        }
+
+        /**
+         * Loads a position written by toBinary/encodeBinary. Pieces are placed
+         * straight onto the bitboards; the move history is cleared.
+         * @throws IllegalArgumentException if the data is truncated or holds an invalid piece code
+         */
+        public void loadBinary(byte[] src, int offset, int length) {
+            if (length < 13) throw new IllegalArgumentException("Binary position too short: " + length + " bytes");
+            long occ = 0;
+            for (int i = 0; i < 8; i++) {
+                occ = (occ << 8) | (src[offset + i] & 0xFF);
+            }
+            int pieceCount = Long.bitCount(occ);
+            if (pieceCount > 32 || length < 13 + (pieceCount + 1) / 2) {
+                throw new IllegalArgumentException("Binary position truncated: " + pieceCount + " pieces in " + length + " bytes");
+            }
+
+            clearBoard();
+            ply = 0; // the history no longer matches this position
+            int pos = offset + 13;
+            boolean high = true;
+            for (long bits = occ; bits != 0; bits &= bits - 1) {
+                int code = high ? (src[pos] >>> 4) & 0xF : src[pos++] & 0xF;
+                high = !high;
+                if (code >= 12) throw new IllegalArgumentException("Invalid piece code " + code);
+                putPiece(Long.numberOfTrailingZeros(bits), code);
+            }
+
+            int flags = src[offset + 8] & 0xFF;
+            currentPlayer = (flags & 1) != 0 ? Player.BLACK : Player.WHITE;
+            castlingRights = (flags >>> 1) & 0xF;
+            validateCastlingRights();
+            int epFile = src[offset + 9] & 0xFF;
+            enPassantSquare = epFile == 0 || epFile > 8 ? NO_SQUARE
+                : (currentPlayer == Player.WHITE ? 16 : 40) + epFile - 1;
+            validateEnPassant();
+            halfMoveClock = src[offset + 10] & 0xFF;
+            fullMoveNumber = Math.max(1, ((src[offset + 11] & 0xFF) << 8) | (src[offset + 12] & 0xFF));
+            hash = computeHash();
+        }
+
+        public void loadBinary(byte[] src) {
+            loadBinary(src, 0, src.length);
+        }
+
+        /**
+         * Sets up a bare position from a piece list, for endgame table generation:
+         * no castling rights, no en passant square and an empty history.
+         * The caller must supply both kings and distinct squares.
+         */
+        void setUpPieces(int[] codes, int[] pieceSquares, int count, Player sideToMove) {
+            clearBoard();
+            ply = 0;
+            for (int i = 0; i < count; i++) {
+                putPiece(pieceSquares[i], codes[i]);
+            }
+            currentPlayer = sideToMove;
+            castlingRights = 0;
+            enPassantSquare = NO_SQUARE;
+            halfMoveClock = 0;
+            fullMoveNumber = 1;
+            hash = computeHash();
+        }
+
+        /**
+         * Drops a loaded en passant square unless an enemy pawn really could have
+         * just made the double step past it, so saved or hand-written positions
+         * cannot enable impossible captures.
+         */
+        private void validateEnPassant() {
+            if (enPassantSquare == NO_SQUARE) return;
+            int sq = enPassantSquare;
+            int row = sq >> 3;
+            boolean valid;
+            if (currentPlayer == Player.WHITE) {
+                valid = row == 2 && squares[sq] == NO_PIECE && squares[sq - 8] == NO_PIECE
+                    && squares[sq + 8] == 6 + PAWN;
+            } else {
+                valid = row == 5 && squares[sq] == NO_PIECE && squares[sq + 8] == NO_PIECE
+                    && squares[sq - 8] == PAWN;
+            }
+            if (!valid) enPassantSquare = NO_SQUARE;
+        }
+
+        /**
+         * Keeps only the castling rights whose king and rook are still on their home squares.
+         */
+        private void validateCastlingRights() {
+            if (squares[60] != KING) castlingRights &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+            if (squares[63] != ROOK) castlingRights &= ~WHITE_KING_SIDE;
+            if (squares[56] != ROOK) castlingRights &= ~WHITE_QUEEN_SIDE;
+            if (squares[4] != 6 + KING) castlingRights &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+            if (squares[7] != 6 + ROOK) castlingRights &= ~BLACK_KING_SIDE;
+            if (squares[0] != 6 + ROOK) castlingRights &= ~BLACK_QUEEN_SIDE;
         }
 
         public String getCastlingRightsString() {
-            StringBuilder sb = new StringBuilder();
-            if (whiteKingSideCastle) sb.append("K");
-            if (whiteQueenSideCastle) sb.append("Q");
-            if (blackKingSideCastle) sb.append("k");
-            if (blackQueenSideCastle) sb.append("q");
+            StringBuilder sb = new StringBuilder(4);
+            if ((castlingRights & WHITE_KING_SIDE) != 0) sb.append('K');
+            if ((castlingRights & WHITE_QUEEN_SIDE) != 0) sb.append('Q');
+            if ((castlingRights & BLACK_KING_SIDE) != 0) sb.append('k');
+            if ((castlingRights & BLACK_QUEEN_SIDE) != 0) sb.append('q');
             return sb.length() == 0 ? "-" : sb.toString();
         }
 
         public void loadCastlingRightsString(String s) {
-            whiteKingSideCastle = s.contains("K");
-            whiteQueenSideCastle = s.contains("Q");
-            blackKingSideCastle = s.contains("k");
-            blackQueenSideCastle = s.contains("q");
+            castlingRights = 0;
+            if (s.contains("K")) castlingRights |= WHITE_KING_SIDE;
+            if (s.contains("Q")) castlingRights |= WHITE_QUEEN_SIDE;
+            if (s.contains("k")) castlingRights |= BLACK_KING_SIDE;
+            if (s.contains("q")) castlingRights |= BLACK_QUEEN_SIDE;
+            validateCastlingRights();
+            hash = computeHash();
         }
-        
+
         // --- Setters for Loading Game ---
-        public void setCurrentPlayer(Player p) { this.currentPlayer = p; }
-        public void setEnPassantTarget(Position p) { this.enPassantTarget = p; }
+        public void setCurrentPlayer(Player p) {
+            this.currentPlayer = p;
+            hash = computeHash();
+        }
+        public void setEnPassantTarget(Position p) {
+            this.enPassantSquare = (p == null || !p.isValid()) ? NO_SQUARE : p.square();
+            validateEnPassant();
+            hash = computeHash();
+        }
     }
 
 
     /**
      * Abstract base class for all chess pieces.
+     * Pieces are stateless apart from their color, so the board hands out
+     * one shared instance per piece code (color * 6 + type).
      */
     public static abstract class Piece {
         protected Player player;
 
+        private static final Piece[] FLYWEIGHTS = {
+            new Pawn(Player.WHITE), new Knight(Player.WHITE), new Bishop(Player.WHITE),
+            new Rook(Player.WHITE), new Queen(Player.WHITE), new King(Player.WHITE),
+            new Pawn(Player.BLACK), new Knight(Player.BLACK), new Bishop(Player.BLACK),
+            new Rook(Player.BLACK), new Queen(Player.BLACK), new King(Player.BLACK)
+        };
+
         public Piece(Player player) {
             this.player = player;
         }
         public Player getPlayer() { return player; }
         public abstract char getSymbol();
-        public abstract List<Position> getRawMoves(Position from, Board board);
+        public abstract int getType();
 
-        public List<Position> getValidMoves(Position from, Board board) {
-            List<Position> validMoves = new ArrayList<>();
-            List<Position> rawMoves = getRawMoves(from, board);
-            
-            for (Position to : rawMoves) {
-                Piece capturedPiece = board.getPieceAt(to);
-                board.setPieceAt(to, this);
-                board.setPieceAt(from, null);
-                
-                Position oldKingPos = null;
-                if (this instanceof King) {
-                    if (player == Player.WHITE) {
-                        oldKingPos = board.whiteKingPos;
-                        board.whiteKingPos = to;
-                    } else {
-                        oldKingPos = board.blackKingPos;
-                        board.blackKingPos = to;
-                    }
-                }
+        /**
+         * Writes the pseudo-legal moves of this piece standing on square 'from'
+         * into moves[count...] as packed ints (see {@link Move}) and returns the
+         * new count. Allocates nothing; the caller owns and reuses the buffer.
+         */
+        public abstract int generateMoves(int from, Board board, int[] moves, int count);
 
-                if (!board.isKingInCheck(this.player)) {
-                    validMoves.add(to);
-                }
+        int getCode() { return player.ordinal() * 6 + getType(); }
+
+        static Piece forCode(int code) { return FLYWEIGHTS[code]; }
 
-                board.setPieceAt(from, this);
-                board.setPieceAt(to, capturedPiece);
-                if (this instanceof King) {
-                    if (player == Player.WHITE) board.whiteKingPos = oldKingPos;
-                    else board.blackKingPos = oldKingPos;
+        /**
+         * Pseudo-legal target squares (may leave the king in check).
+         * Thin adapter over {@link #generateMoves} for the Swing UI.
+         */
+        public List<Position> getRawMoves(Position from, Board board) {
+            int[] buffer = board.getScratchMoves();
+            int count = generateMoves(from.square(), board, buffer, 0);
+            List<Position> moves = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int move = buffer[i];
+                if (Move.promotion(move) == 0 || Move.promotion(move) == QUEEN) { // one target square per promotion
+                    moves.add(Position.of(Move.to(move)));
                 }
             }
-            
-            if (this instanceof King) {
-                validMoves.addAll(getCastlingMoves(from, board));
-            }
-            
-            return validMoves;
+            return moves;
         }
-        
-        protected void addSlidingMoves(Position from, Board board, int[] dRows, int[] dCols, List<Position> moves) {
-            for (int i = 0; i < dRows.length; i++) {
-                for (int j = 1; j < 8; j++) {
-                    int r = from.row + dRows[i] * j;
-                    int c = from.col + dCols[i] * j;
-                    Position to = new Position(r, c);
-                    
-                    if (!to.isValid()) break;
-                    
-                    Piece target = board.getPieceAt(to);
-                    if (target == null) {
-                        moves.add(to);
-                    } else {
-                        if (target.getPlayer() != this.player) {
-                            moves.add(to);
-                        }
-                        break;
-                    }
+
+        /**
+         * Legal target squares. Thin adapter over {@link #generateMoves} for the Swing UI.
+         */
+        public List<Position> getValidMoves(Position from, Board board) {
+            int[] buffer = board.getScratchMoves();
+            int count = generateMoves(from.square(), board, buffer, 0);
+            List<Position> validMoves = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int move = buffer[i];
+                if ((Move.promotion(move) == 0 || Move.promotion(move) == QUEEN) && board.isLegal(move)) {
+                    validMoves.add(Position.of(Move.to(move)));
                 }
             }
+            return validMoves;
         }
-        
-        protected List<Position> getCastlingMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            if (!(this instanceof King) || board.isKingInCheck(player)) {
-                return moves;
-            }
-            
-            // King-side
-            if (board.getKingSideCastle(player)) {
-                if (board.getPieceAt(new Position(from.row, 5)) == null &&
-                    board.getPieceAt(new Position(from.row, 6)) == null &&
-                    !board.isSquareAttackedBy(new Position(from.row, 5), player == Player.WHITE ? Player.BLACK : Player.WHITE) &&
-                    !board.isSquareAttackedBy(new Position(from.row, 6), player == Player.WHITE ? Player.BLACK : Player.WHITE)) 
-                {
-                    moves.add(new Position(from.row, 6));
-                }
-            }
-            
-            // Queen-side
-            if (board.getQueenSideCastle(player)) {
-                if (board.getPieceAt(new Position(from.row, 1)) == null &&
-                    board.getPieceAt(new Position(from.row, 2)) == null &&
-                    board.getPieceAt(new Position(from.row, 3)) == null &&
-                    !board.isSquareAttackedBy(new Position(from.row, 2), player == Player.WHITE ? Player.BLACK : Player.WHITE) &&
-                    !board.isSquareAttackedBy(new Position(from.row, 3), player == Player.WHITE ? Player.BLACK : Player.WHITE))
-                {
-                    moves.add(new Position(from.row, 2));
-                }
+
+        /**
+         * Adds one move per target bit, flagging the ones that land on a piece.
+         */
+        protected int addMoves(int from, long targets, Board board, int[] moves, int count) {
+            long enemies = board.getOccupancy(player.opponent());
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                moves[count++] = Move.of(from, to, (enemies & (1L << to)) != 0 ? Move.CAPTURE : 0);
             }
-            
-            return moves;
+            return count;
         }
     }
 
     public static class Pawn extends Piece {
         public Pawn(Player player) { super(player); }
         public char getSymbol() { return (player == Player.WHITE) ? 'P' : 'p'; }
+        public int getType() { return PAWN; }
 
         @Override
-        public List<Position> getRawMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            int dir = (player == Player.WHITE) ? -1 : 1;
-            int startRow = (player == Player.WHITE) ? 6 : 1;
-            
-            Position oneForward = new Position(from.row + dir, from.col);
-            if (oneForward.isValid() && board.getPieceAt(oneForward) == null) {
-                moves.add(oneForward);
-                Position twoForward = new Position(from.row + 2 * dir, from.col);
-                if (from.row == startRow && board.getPieceAt(twoForward) == null) {
-                    moves.add(twoForward);
+        public int generateMoves(int from, Board board, int[] moves, int count) {
+            int us = player.ordinal();
+            int push = (us == 0) ? -8 : 8;
+            int startRow = (us == 0) ? 6 : 1;
+            long occupied = board.getOccupied();
+
+            int to = from + push;
+            if (to >= 0 && to < 64 && (occupied & (1L << to)) == 0) {
+                if (to < 8 || to >= 56) {
+                    count = addPromotions(from, to, 0, moves, count);
+                } else {
+                    moves[count++] = Move.of(from, to, 0);
+                    int twoForward = to + push;
+                    if ((from >> 3) == startRow && (occupied & (1L << twoForward)) == 0) {
+                        moves[count++] = Move.of(from, twoForward, Move.DOUBLE_PUSH);
+                    }
                 }
             }
-            
-            int[] captureCols = { from.col - 1, from.col + 1 };
-            for (int c : captureCols) {
-                Position capturePos = new Position(from.row + dir, c);
-                if (capturePos.isValid()) {
-                    Piece target = board.getPieceAt(capturePos);
-                    if (target != null && target.getPlayer() != this.player) {
-                        moves.add(capturePos);
-                    }
-                    if (capturePos.equals(board.getEnPassantTarget())) {
-                        moves.add(capturePos);
-                    }
+
+            long attacks = Attacks.pawn(us, from);
+            long captures = attacks & board.getOccupancy(player.opponent());
+            while (captures != 0) {
+                to = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                if (to < 8 || to >= 56) {
+                    count = addPromotions(from, to, Move.CAPTURE, moves, count);
+                } else {
+                    moves[count++] = Move.of(from, to, Move.CAPTURE);
                 }
             }
-            return moves;
+
+            // The en passant square belongs to the side to move: row 2 for White, row 5 for Black
+            int ep = board.getEnPassantSquare();
+            if (ep != Board.NO_SQUARE && (ep >> 3) == (us == 0 ? 2 : 5) && (attacks & (1L << ep)) != 0) {
+                moves[count++] = Move.of(from, ep, Move.CAPTURE | Move.EN_PASSANT);
+            }
+            return count;
+        }
+
+        private static int addPromotions(int from, int to, int flags, int[] moves, int count) {
+            moves[count++] = Move.of(from, to, flags, QUEEN);
+            moves[count++] = Move.of(from, to, flags, ROOK);
+            moves[count++] = Move.of(from, to, flags, BISHOP);
+            moves[count++] = Move.of(from, to, flags, KNIGHT);
+            return count;
         }
     }
 
     public static class Rook extends Piece {
         public Rook(Player player) { super(player); }
         public char getSymbol() { return (player == Player.WHITE) ? 'R' : 'r'; }
-        
+        public int getType() { return ROOK; }
+
         @Override
-        public List<Position> getRawMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            int[] dRows = { -1, 1, 0, 0 };
-            int[] dCols = { 0, 0, -1, 1 };
-            addSlidingMoves(from, board, dRows, dCols, moves);
-            return moves;
+        public int generateMoves(int from, Board board, int[] moves, int count) {
+            long targets = Attacks.rook(from, board.getOccupied()) & ~board.getOccupancy(player);
+            return addMoves(from, targets, board, moves, count);
         }
     }
 
     public static class Knight extends Piece {
         public Knight(Player player) { super(player); }
         public char getSymbol() { return (player == Player.WHITE) ? 'N' : 'n'; }
+        public int getType() { return KNIGHT; }
 
         @Override
-        public List<Position> getRawMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            int[] dRows = { -2, -2, -1, -1, 1, 1, 2, 2 };
-            int[] dCols = { -1, 1, -2, 2, -2, 2, -1, 1 };
-            
-            for (int i = 0; i < 8; i++) {
-                Position to = new Position(from.row + dRows[i], from.col + dCols[i]);
-                if (to.isValid()) {
-                    Piece target = board.getPieceAt(to);
-                    if (target == null || target.getPlayer() != this.player) {
-                        moves.add(to);
-                    }
-                }
-            }
-            return moves;
+        public int generateMoves(int from, Board board, int[] moves, int count) {
+            return addMoves(from, Attacks.knight(from) & ~board.getOccupancy(player), board, moves, count);
         }
     }
 
     public static class Bishop extends Piece {
         public Bishop(Player player) { super(player); }
         public char getSymbol() { return (player == Player.WHITE) ? 'B' : 'b'; }
+        public int getType() { return BISHOP; }
 
         @Override
-        public List<Position> getRawMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            int[] dRows = { -1, -1, 1, 1 };
-            int[] dCols = { -1, 1, -1, 1 };
-            addSlidingMoves(from, board, dRows, dCols, moves);
-            return moves;
+        public int generateMoves(int from, Board board, int[] moves, int count) {
+            long targets = Attacks.bishop(from, board.getOccupied()) & ~board.getOccupancy(player);
+            return addMoves(from, targets, board, moves, count);
         }
     }
 
     public static class Queen extends Piece {
         public Queen(Player player) { super(player); }
         public char getSymbol() { return (player == Player.WHITE) ? 'Q' : 'q'; }
-        
+        public int getType() { return QUEEN; }
+
         @Override
-        public List<Position> getRawMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            int[] dRows = { -1, 1, 0, 0, -1, -1, 1, 1 };
-            int[] dCols = { 0, 0, -1, 1, -1, 1, -1, 1 };
-            addSlidingMoves(from, board, dRows, dCols, moves);
-            return moves;
+        public int generateMoves(int from, Board board, int[] moves, int count) {
+            long targets = Attacks.queen(from, board.getOccupied()) & ~board.getOccupancy(player);
+            return addMoves(from, targets, board, moves, count);
         }
     }
-    
+
     public static class King extends Piece {
         public King(Player player) { super(player); }
         public char getSymbol() { return (player == Player.WHITE) ? 'K' : 'k'; }
-        
+        public int getType() { return KING; }
+
         @Override
-        public List<Position> getRawMoves(Position from, Board board) {
-            List<Position> moves = new ArrayList<>();
-            int[] dRows = { -1, -1, -1, 0, 0, 1, 1, 1 };
-            int[] dCols = { -1, 0, 1, -1, 1, -1, 0, 1 };
-            
-            for (int i = 0; i < 8; i++) {
-                Position to = new Position(from.row + dRows[i], from.col + dCols[i]);
-                if (to.isValid()) {
-                    Piece target = board.getPieceAt(to);
-                    if (target == null || target.getPlayer() != this.player) {
-                        moves.add(to);
-                    }
-                }
+        public int generateMoves(int from, Board board, int[] moves, int count) {
+            count = addMoves(from, Attacks.king(from) & ~board.getOccupancy(player), board, moves, count);
+
+            // Castling: squares between king and rook empty, king not in check and not passing through an attacked square
+            boolean kingSide = board.getKingSideCastle(player);
+            boolean queenSide = board.getQueenSideCastle(player);
+            if (!kingSide && !queenSide) {
+                return count;
             }
-            return moves;
+            int them = player.opponent().ordinal();
+            long occupied = board.getOccupied();
+            long rooks = board.getPieces(player, ROOK);
+            if (board.isSquareAttacked(from, them)) {
+                return count;
+            }
+
+            // King-side
+            if (kingSide && (rooks & (1L << (from + 3))) != 0 &&
+                (occupied & (3L << (from + 1))) == 0 &&
+                !board.isSquareAttacked(from + 1, them) &&
+                !board.isSquareAttacked(from + 2, them))
+            {
+                moves[count++] = Move.of(from, from + 2, Move.CASTLING);
+            }
+
+            // Queen-side
+            if (queenSide && (rooks & (1L << (from - 4))) != 0 &&
+                (occupied & (7L << (from - 3))) == 0 &&
+                !board.isSquareAttacked(from - 1, them) &&
+                !board.isSquareAttacked(from - 2, them))
+            {
+                moves[count++] = Move.of(from, from - 2, Move.CASTLING);
+            }
+            return count;
         }
     }
 }
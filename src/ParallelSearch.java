@@ -0,0 +1,201 @@
+//ParallelSearch.java
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Lazy SMP: runs one main SearchEngine and N-1 helper engines on the same
+ * position at once. Every engine has its own Board copy, killer and history
+ * tables; the only shared state is the lock-free TranspositionTable, through
+ * which the helpers' work speeds up the main search. The main engine's result
+ * is the answer, and the helpers are stopped as soon as it returns.
+ * Searches run one at a time: a search started while another is still
+ * unwinding waits for it instead of sharing its engines.
+ */
+public class ParallelSearch {
+
+    /**
+     * Main-thread result plus per-thread node counts.
+     */
+    public static class Result {
+        public final SearchEngine.Result best;
+        public final long[] threadNodes; // every node each thread searched, up to the stop
+        public final long timeMillis;    // wall-clock time of the whole search
+        public final boolean fromBook;   // best.bestMove came from the opening book; nothing was searched
+
+        Result(SearchEngine.Result best, long[] threadNodes, long timeMillis, boolean fromBook) {
+            this.best = best;
+            this.threadNodes = threadNodes;
+            this.timeMillis = timeMillis;
+            this.fromBook = fromBook;
+        }
+
+        public long getTotalNodes() {
+            long total = 0;
+            for (long n : threadNodes) total += n;
+            return total;
+        }
+
+        public long getNodesPerSecond() {
+            return timeMillis == 0 ? getTotalNodes() * 1000 : getTotalNodes() * 1000 / timeMillis;
+        }
+
+        /**
+         * Total nodes searched relative to the main thread alone over the same
+         * time: how close the helpers came to linear NPS scaling.
+         */
+        public double getNpsScaling() {
+            return threadNodes[0] == 0 ? 0 : (double) getTotalNodes() / threadNodes[0];
+        }
+
+        @Override
+        public String toString() {
+            return best + " | threads " + threadNodes.length + " total nodes " + getTotalNodes()
+                + " nps " + getNodesPerSecond() + String.format(" scaling x%.2f", getNpsScaling())
+                + " per-thread " + java.util.Arrays.toString(threadNodes);
+        }
+    }
+
+    private final SearchEngine[] engines;
+    private final TranspositionTable transpositionTable;
+    private final ExecutorService helperPool;
+    private volatile OpeningBook openingBook;
+    private final java.util.Random bookRandom = new java.util.Random();
+
+    // Held for the whole search; the engines and their stop flags belong to one search at a time
+    private final Object searchLock = new Object();
+    // Bumped by every stop(), so a search can tell whether it was stopped while it waited for the lock
+    private final AtomicInteger stopCount = new AtomicInteger();
+
+    /**
+     * @param threads total search threads including the caller's (at least 1)
+     * @param hashMb  size of the shared transposition table
+     */
+    public ParallelSearch(int threads, int hashMb) {
+        threads = Math.max(1, threads);
+        transpositionTable = new TranspositionTable(hashMb);
+        engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(transpositionTable);
+            engines[i].setDepthOffset(i % 2);
+        }
+        helperPool = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "search-helper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Book consulted before every search; null to always search.
+     */
+    public void setOpeningBook(OpeningBook book) { this.openingBook = book; }
+
+    /**
+     * Endgame tables for every search thread; null for none.
+     */
+    public void setEndgameTables(EndgameTables endgameTables) {
+        for (SearchEngine engine : engines) {
+            engine.setEndgameTables(endgameTables);
+        }
+    }
+
+    public int getThreadCount() { return engines.length; }
+    public TranspositionTable getTranspositionTable() { return transpositionTable; }
+
+    /**
+     * Plays from the opening book if the position is in it; otherwise searches
+     * with all threads. The limits apply to the main engine, which runs on the
+     * calling thread. See {@link SearchEngine#search} for the parameters.
+     * A {@link #stop()} issued after this call started also stops this search,
+     * even while it is still waiting for an earlier one to finish.
+     */
+    public Result search(GameLogic.Board position, int maxDepth, long timeLimitMillis, long nodeLimit,
+                         Consumer<SearchEngine.Result> listener) {
+        int stops = stopCount.get();
+        final GameLogic.Board snapshot = new GameLogic.Board(position);
+        OpeningBook book = openingBook;
+        if (book != null) {
+            int bookMove;
+            synchronized (bookRandom) {
+                bookMove = book.pickMove(snapshot, bookRandom);
+            }
+            if (bookMove != GameLogic.Move.NONE) {
+                SearchEngine.Result result = new SearchEngine.Result(bookMove, 0, 0, 0, 0, new int[] {bookMove});
+                return new Result(result, new long[engines.length], 0, true);
+            }
+        }
+
+        synchronized (searchLock) {
+            return searchAllThreads(snapshot, stops, maxDepth, timeLimitMillis, nodeLimit, listener);
+        }
+    }
+
+    private Result searchAllThreads(GameLogic.Board snapshot, int stops, int maxDepth, long timeLimitMillis,
+                                    long nodeLimit, Consumer<SearchEngine.Result> listener) {
+        // Clear the stop flags left by the last search, then restore them if this search was
+        // stopped in the meantime; stop() counts before it sets the flags, so none is lost
+        for (SearchEngine engine : engines) {
+            engine.resetStop();
+        }
+        if (stopCount.get() != stops) {
+            for (SearchEngine engine : engines) {
+                engine.stop();
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        transpositionTable.newSearch(); // one generation for all threads, or the entries they store look stale
+        List<Future<SearchEngine.Result>> helpers = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++) {
+            final SearchEngine helper = engines[i];
+            helpers.add(helperPool.submit(() -> helper.run(snapshot, maxDepth, 0, 0, null)));
+        }
+
+        SearchEngine.Result best;
+        try {
+            best = engines[0].run(snapshot, maxDepth, timeLimitMillis, nodeLimit, listener);
+        } finally {
+            for (int i = 1; i < engines.length; i++) {
+                engines[i].stop();
+            }
+        }
+
+        // Count every thread up to its stop; best.nodes would stop at the last completed iteration
+        long[] threadNodes = new long[engines.length];
+        threadNodes[0] = engines[0].getNodes();
+        for (int i = 1; i < engines.length; i++) {
+            try {
+                helpers.get(i - 1).get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            threadNodes[i] = engines[i].getNodes();
+        }
+        return new Result(best, threadNodes, System.currentTimeMillis() - start, false);
+    }
+
+    /**
+     * Stops the running search, and any search already waiting to start.
+     */
+    public void stop() {
+        stopCount.incrementAndGet();
+        for (SearchEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Stops the helper threads for good.
+     */
+    public void shutdown() {
+        stop();
+        if (helperPool != null) helperPool.shutdownNow();
+    }
+}
@@ -0,0 +1,188 @@
+//Perft.java
+
+
+/**
+ * Perft ("performance test") driver for the move generator.
+ * Counts the leaf nodes of the legal move tree to a fixed depth and compares
+ * them with the published counts for the standard test positions, so every
+ * change to move generation, make/unmake or hashing can be checked for
+ * correctness and timed in nodes per second.
+ *
+ * Usage:
+ *   java Perft [maxDepth]                 run the standard suite up to maxDepth (default 4)
+ *   java Perft divide depth "fen"         per-root-move counts for one position
+ *   java Perft depth "fen"                total count for one position
+ */
+public class Perft {
+
+    private static class TestPosition {
+        final String name;
+        final String fen;
+        final long[] expected; // expected[d - 1] = nodes at depth d
+
+        TestPosition(String name, String fen, long... expected) {
+            this.name = name;
+            this.fen = fen;
+            this.expected = expected;
+        }
+    }
+
+    private static final TestPosition[] SUITE = {
+        new TestPosition("Start position",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            20, 400, 8902, 197281, 4865609, 119060324),
+        new TestPosition("Kiwipete",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            48, 2039, 97862, 4085603, 193690690),
+        new TestPosition("Position 3",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            14, 191, 2812, 43238, 674624, 11030083, 178633661),
+        new TestPosition("Position 4",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            6, 264, 9467, 422333, 15833292, 706045033),
+        new TestPosition("Position 5",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            44, 1486, 62379, 2103487, 89941194),
+        new TestPosition("Position 6",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            46, 2079, 89890, 3894594, 164075551, 6923051137L)
+    };
+
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * Counts leaf nodes at the given depth. Uses bulk counting at depth 1
+     * (the number of legal moves), and one 256-move buffer slice per ply.
+     */
+    public static long perft(GameLogic.Board board, int depth) {
+        if (depth <= 0) return 1;
+        return perft(board, depth, new int[Math.min(depth, MAX_DEPTH) * 256], 0);
+    }
+
+    private static long perft(GameLogic.Board board, int depth, int[] moves, int offset) {
+        int end = board.generateLegalMoves(moves, offset);
+        if (depth == 1) return end - offset;
+        long nodes = 0;
+        for (int i = offset; i < end; i++) {
+            board.doMove(moves[i]);
+            nodes += perft(board, depth - 1, moves, end);
+            board.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Prints the node count below every root move, then the total.
+     */
+    public static long divide(GameLogic.Board board, int depth) {
+        int[] moves = new int[256];
+        int count = board.generateLegalMoves(moves, 0);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            board.doMove(moves[i]);
+            long nodes = perft(board, depth - 1);
+            board.undoMove();
+            total += nodes;
+            System.out.println(GameLogic.Move.toString(moves[i]) + ": " + nodes);
+        }
+        System.out.println();
+        System.out.println("Moves: " + count);
+        System.out.println("Nodes: " + total);
+        return total;
+    }
+
+    /**
+     * Runs every suite position from depth 1 to maxDepth (as far as counts are known),
+     * then the legality checks for the side not to move.
+     * @return true if every count matched
+     */
+    public static boolean runSuite(int maxDepth) {
+        boolean allPassed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (TestPosition test : SUITE) {
+            System.out.println(test.name + "  [" + test.fen + "]");
+            GameLogic.Board board = new GameLogic.Board();
+            board.loadBoardStateString(test.fen);
+            for (int depth = 1; depth <= Math.min(maxDepth, test.expected.length); depth++) {
+                long start = System.nanoTime();
+                long nodes = perft(board, depth);
+                long nanos = System.nanoTime() - start;
+                boolean passed = nodes == test.expected[depth - 1];
+                allPassed &= passed;
+                totalNodes += nodes;
+                totalNanos += nanos;
+                System.out.printf("  depth %d: %,15d nodes  %8.1f ms  %,12d nps  %s%n",
+                    depth, nodes, nanos / 1e6, nps(nodes, nanos),
+                    passed ? "OK" : "FAIL (expected " + test.expected[depth - 1] + ")");
+            }
+        }
+        System.out.printf("%nTotal: %,d nodes in %.1f ms, %,d nps - %s%n",
+            totalNodes, totalNanos / 1e6, nps(totalNodes, totalNanos), allPassed ? "all counts match" : "MISMATCHES FOUND");
+        return checkOffTurnQueries() && allPassed;
+    }
+
+    /**
+     * Legality queries about the side not to move, which perft never makes:
+     * the UI asks for any piece's moves and for mate/stalemate of either side.
+     * @return true if every check passed
+     */
+    public static boolean checkOffTurnQueries() {
+        boolean passed = true;
+
+        // Black rook on e7 pinned against its king; White to move
+        GameLogic.Board board = new GameLogic.Board();
+        board.loadBoardStateString("4k3/4r3/8/8/8/8/4R3/4K3 w - - 0 1");
+        GameLogic.Position rook = new GameLogic.Position(1, 4);
+        java.util.List<GameLogic.Position> targets = board.getPieceAt(rook).getValidMoves(rook, board);
+        boolean pinOk = targets.size() == 5 && targets.contains(new GameLogic.Position(6, 4));
+        for (GameLogic.Position target : targets) pinOk &= target.col == 4;
+        passed &= report("pinned rook of the side not to move", pinOk);
+
+        // Black is stalemated, but it is White's turn
+        board.loadBoardStateString("7k/5Q2/6K1/8/8/8/8/8 w - - 0 1");
+        passed &= report("stalemate of the side not to move",
+            board.isStalemate(GameLogic.Player.BLACK) && !board.hasLegalMoves(GameLogic.Player.BLACK));
+
+        // Black is mated, but it is White's turn
+        board.loadBoardStateString("R5k1/5ppp/8/8/8/8/8/6K1 w - - 0 1");
+        passed &= report("checkmate of the side not to move", board.isCheckmate(GameLogic.Player.BLACK));
+
+        // White pawns next to the square Black may capture en passant cannot use it
+        board.loadBoardStateString("4k3/8/8/8/4Pp2/8/3P4/4K3 b - e3 0 1");
+        GameLogic.Position pawn = new GameLogic.Position(6, 3);
+        passed &= report("en passant square of the other side",
+            !board.getPieceAt(pawn).getRawMoves(pawn, board).contains(new GameLogic.Position(5, 4)));
+        return passed;
+    }
+
+    private static boolean report(String name, boolean passed) {
+        System.out.println("  " + name + ": " + (passed ? "OK" : "FAIL"));
+        return passed;
+    }
+
+    private static long nps(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    public static void main(String[] args) {
+        if (args.length >= 3 && args[0].equals("divide")) {
+            GameLogic.Board board = new GameLogic.Board();
+            board.loadBoardStateString(args[2]);
+            divide(board, Integer.parseInt(args[1]));
+        } else if (args.length >= 2) {
+            GameLogic.Board board = new GameLogic.Board();
+            board.loadBoardStateString(args[1]);
+            int depth = Integer.parseInt(args[0]);
+            long start = System.nanoTime();
+            long nodes = perft(board, depth);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("depth %d: %,d nodes  %.1f ms  %,d nps%n", depth, nodes, nanos / 1e6, nps(nodes, nanos));
+        } else {
+            int maxDepth = args.length == 1 ? Integer.parseInt(args[0]) : 4;
+            if (!runSuite(maxDepth)) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,656 @@
+//Pgn.java
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Portable Game Notation support: SAN parsing and formatting against
+ * GameLogic.Board, a streaming reader that holds one game in memory at a
+ * time, a writer, and a command-line import/export tool.
+ *
+ * Usage:
+ *   java Pgn stats games.pgn [threads]     parse and check every game, report games per second
+ *   java Pgn import games.pgn [threads]    same, and store the games in MySQL in batches
+ *   java Pgn export out.pgn                write every saved game to a PGN file
+ */
+public class Pgn {
+
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final String PIECE_LETTERS = "PNBRQK";
+    private static final int IMPORT_BATCH_SIZE = 200;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    /**
+     * One game: its tags, the position it starts from and the moves played.
+     */
+    public static final class Game {
+        private final Map<String, String> tags;
+        private final GameLogic.Board board; // final position; its move history is the game
+
+        public Game(Map<String, String> tags, GameLogic.Board board) {
+            this.tags = tags;
+            this.board = board;
+        }
+
+        /**
+         * Wraps a board's history as a game. The Result tag is filled in from the
+         * board if the game is over and the tag is not already given.
+         */
+        public static Game fromBoard(GameLogic.Board board, Map<String, String> tags) {
+            Map<String, String> all = new LinkedHashMap<>(tags);
+            all.putIfAbsent("Result", resultOf(board));
+            return new Game(all, new GameLogic.Board(board));
+        }
+
+        public Map<String, String> getTags() { return tags; }
+        public String getTag(String name) { return tags.get(name); }
+        /** "1-0", "0-1", "1/2-1/2", or "*" when unknown or unfinished. */
+        public String getResult() {
+            String result = tags.get("Result");
+            return "1-0".equals(result) || "0-1".equals(result) || "1/2-1/2".equals(result) ? result : "*";
+        }
+        public GameLogic.Board getBoard() { return board; }
+        public int[] getMoves() { return board.getMoveHistory(); }
+    }
+
+    // --- SAN ---
+
+    /**
+     * Finds the legal move written in Standard Algebraic Notation, e.g. "Nf3",
+     * "exd5", "e8=Q+", "O-O". Check marks and annotations (!, ?) are ignored.
+     * @throws IllegalArgumentException if the SAN is malformed, illegal or ambiguous
+     */
+    public static int parseSan(GameLogic.Board board, String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+        String s = san.substring(0, end);
+
+        // Pseudo-legal moves, filtered first; only the candidates pay for the legality check
+        int[] moves = board.getScratchMoves();
+        int count = board.generateMoves(moves, 0);
+
+        if (s.equals("O-O") || s.equals("0-0") || s.equals("O-O-O") || s.equals("0-0-0")) {
+            boolean queenSide = s.length() == 5;
+            for (int i = 0; i < count; i++) {
+                int m = moves[i];
+                if (GameLogic.Move.isCastling(m) && (GameLogic.Move.to(m) % 8 < 4) == queenSide && board.isLegal(m)) return m;
+            }
+            throw new IllegalArgumentException("Illegal castling: " + san);
+        }
+
+        int type = GameLogic.PAWN;
+        int pos = 0;
+        if (s.length() > 0 && PIECE_LETTERS.indexOf(s.charAt(0)) > 0) {
+            type = PIECE_LETTERS.indexOf(s.charAt(0));
+            pos = 1;
+        }
+        int promotion = 0;
+        int eq = s.indexOf('=');
+        if (eq >= 0 && eq + 1 < s.length()) {
+            promotion = PIECE_LETTERS.indexOf(s.charAt(eq + 1));
+            s = s.substring(0, eq);
+        } else if (type == GameLogic.PAWN && s.length() > 2 && PIECE_LETTERS.indexOf(s.charAt(s.length() - 1)) > 0) {
+            promotion = PIECE_LETTERS.indexOf(s.charAt(s.length() - 1)); // "e8Q"
+            s = s.substring(0, s.length() - 1);
+        }
+        if (s.length() < pos + 2) throw new IllegalArgumentException("Malformed SAN: " + san);
+
+        GameLogic.Position target = GameLogic.Position.fromString(s.substring(s.length() - 2));
+        if (target == null) throw new IllegalArgumentException("Malformed SAN: " + san);
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = pos; i < s.length() - 2; i++) {
+            char c = s.charAt(i);
+            if (c >= 'a' && c <= 'h') fromFile = c - 'a';
+            else if (c >= '1' && c <= '8') fromRank = c - '1';
+            else if (c != 'x' && c != ':' && c != '-') throw new IllegalArgumentException("Malformed SAN: " + san);
+        }
+
+        int found = GameLogic.Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int m = moves[i];
+            int from = GameLogic.Move.from(m);
+            if (GameLogic.Move.to(m) != target.square() || board.getPieceCode(from) % 6 != type) continue;
+            if (fromFile >= 0 && from % 8 != fromFile) continue;
+            if (fromRank >= 0 && 7 - from / 8 != fromRank) continue;
+            if (GameLogic.Move.promotion(m) != promotion || !board.isLegal(m)) continue;
+            if (found != GameLogic.Move.NONE) throw new IllegalArgumentException("Ambiguous SAN: " + san);
+            found = m;
+        }
+        if (found == GameLogic.Move.NONE) throw new IllegalArgumentException("Illegal move: " + san);
+        return found;
+    }
+
+    /**
+     * Writes a legal move in Standard Algebraic Notation, with + or # when it
+     * gives check or mate.
+     */
+    public static String toSan(GameLogic.Board board, int move) {
+        StringBuilder sb = new StringBuilder(8);
+        int from = GameLogic.Move.from(move);
+        int to = GameLogic.Move.to(move);
+        int type = board.getPieceCode(from) % 6;
+
+        if (GameLogic.Move.isCastling(move)) {
+            sb.append(to % 8 < 4 ? "O-O-O" : "O-O");
+        } else {
+            if (type == GameLogic.PAWN) {
+                if (GameLogic.Move.isCapture(move)) sb.append((char) ('a' + from % 8));
+            } else {
+                sb.append(PIECE_LETTERS.charAt(type));
+                appendDisambiguation(board, move, type, sb);
+            }
+            if (GameLogic.Move.isCapture(move)) sb.append('x');
+            sb.append(GameLogic.Position.of(to));
+            if (GameLogic.Move.promotion(move) != 0) {
+                sb.append('=').append(PIECE_LETTERS.charAt(GameLogic.Move.promotion(move)));
+            }
+        }
+
+        board.doMove(move);
+        GameLogic.Player toMove = board.getCurrentPlayer();
+        if (board.isKingInCheck(toMove)) {
+            sb.append(board.hasLegalMoves(toMove) ? '+' : '#');
+        }
+        board.undoMove();
+        return sb.toString();
+    }
+
+    private static void appendDisambiguation(GameLogic.Board board, int move, int type, StringBuilder sb) {
+        int from = GameLogic.Move.from(move);
+        int[] moves = board.getScratchMoves();
+        int count = board.generateMoves(moves, 0);
+        boolean clash = false, sameFile = false, sameRank = false;
+        for (int i = 0; i < count; i++) {
+            int other = GameLogic.Move.from(moves[i]);
+            if (other == from || GameLogic.Move.to(moves[i]) != GameLogic.Move.to(move)
+                    || board.getPieceCode(other) % 6 != type || !board.isLegal(moves[i])) continue;
+            clash = true;
+            if (other % 8 == from % 8) sameFile = true;
+            if (other / 8 == from / 8) sameRank = true;
+        }
+        if (!clash) return;
+        if (!sameFile) {
+            sb.append((char) ('a' + from % 8));
+        } else if (!sameRank) {
+            sb.append((char) ('8' - from / 8));
+        } else {
+            sb.append(GameLogic.Position.of(from));
+        }
+    }
+
+    static String resultOf(GameLogic.Board board) {
+        GameLogic.Player toMove = board.getCurrentPlayer();
+        if (board.isCheckmate(toMove)) return toMove == GameLogic.Player.WHITE ? "0-1" : "1-0";
+        // A claimed draw ends the game too; a claimable one that was not claimed does not
+        if (board.isGameOver() || board.isStalemate(toMove) || board.isInsufficientMaterial()
+                || board.isFivefoldRepetition() || board.isSeventyFiveMoveDraw()) {
+            return "1/2-1/2";
+        }
+        return "*";
+    }
+
+    // --- Parsing one game ---
+
+    /**
+     * Parses the text of one game: tag pairs, then movetext. Comments,
+     * variations, NAGs and move numbers are skipped; every move is checked
+     * for legality by playing it on a board. The board's status message is
+     * not updated while replaying.
+     * @throws IllegalArgumentException on an illegal move or a bad FEN tag
+     */
+    public static Game parse(String text) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        int i = 0;
+        int n = text.length();
+
+        // Tag pairs: [Name "Value"]
+        while (true) {
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            if (i >= n || text.charAt(i) != '[') break;
+            int close = i + 1;
+            boolean inString = false;
+            StringBuilder value = new StringBuilder();
+            int nameStart = i + 1;
+            int nameEnd = -1;
+            for (; close < n; close++) {
+                char c = text.charAt(close);
+                if (inString) {
+                    if (c == '\\' && close + 1 < n) value.append(text.charAt(++close));
+                    else if (c == '"') inString = false;
+                    else value.append(c);
+                } else if (c == '"') {
+                    inString = true;
+                    if (nameEnd < 0) nameEnd = close;
+                } else if (c == ']' || c == '\n') {
+                    break;
+                }
+            }
+            if (nameEnd > nameStart) tags.put(text.substring(nameStart, nameEnd).trim(), value.toString());
+            i = close + 1;
+        }
+
+        GameLogic.Board board = new GameLogic.Board();
+        String fen = tags.get("FEN");
+        if (fen != null) {
+            try {
+                board.loadBoardStateString(fen);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Bad FEN tag: " + fen, e);
+            }
+        }
+
+        // Movetext
+        int depth = 0; // variation nesting
+        String result = null;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '{') {
+                int close = text.indexOf('}', i);
+                i = close < 0 ? n : close + 1;
+            } else if (c == ';') {
+                int eol = text.indexOf('\n', i);
+                i = eol < 0 ? n : eol + 1;
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                i++;
+            } else if (c == '}') {
+                i++; // stray end of comment
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(text.charAt(i)) && "{}();".indexOf(text.charAt(i)) < 0) i++;
+                String token = text.substring(start, i);
+                if (token.isEmpty()) {
+                    i++;
+                    continue;
+                }
+                if (depth > 0 || token.charAt(0) == '$') continue;
+                if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                    result = token;
+                    break;
+                }
+                // Strip a leading move number: "12." / "12..." / "12...e5"
+                int k = 0;
+                while (k < token.length() && Character.isDigit(token.charAt(k))) k++;
+                if (k > 0 && k < token.length() && token.charAt(k) == '.') {
+                    while (k < token.length() && token.charAt(k) == '.') k++;
+                    token = token.substring(k);
+                }
+                if (token.isEmpty() || token.equals("--")) continue;
+                board.doMove(parseSan(board, token)); // already checked against the legal moves
+            }
+        }
+        if (result != null) tags.putIfAbsent("Result", result);
+        return new Game(tags, board);
+    }
+
+    // --- Streaming reader ---
+
+    /**
+     * Splits a PGN stream into the text of single games. Reads through an NIO
+     * channel in fixed-size chunks, so memory use does not depend on the file
+     * size; only the current game is held (capped at MAX_GAME_BYTES).
+     */
+    public static final class Reader implements Closeable {
+        private static final int MAX_GAME_BYTES = 1 << 20;
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private byte[] game = new byte[8192];
+        private int gameLength;
+        private boolean inMovetext;
+        private boolean bomChecked;
+        private boolean eof;
+        private long bytesRead;
+
+        public Reader(Path path) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.READ));
+        }
+
+        public Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip(); // start empty
+        }
+
+        /**
+         * @return the raw text of the next game, or null at the end of the stream
+         */
+        public String nextGame() throws IOException {
+            while (true) {
+                int lineStart = gameLength;
+                if (!readLine()) {
+                    String last = gameLength > 0 && !isBlank(0, gameLength) ? takeGame(gameLength) : null;
+                    gameLength = 0;
+                    return last;
+                }
+                if (!bomChecked) {
+                    bomChecked = true;
+                    // Drop a UTF-8 byte order mark at the start of the file
+                    if (gameLength >= 3 && (game[0] & 0xFF) == 0xEF && (game[1] & 0xFF) == 0xBB && (game[2] & 0xFF) == 0xBF) {
+                        System.arraycopy(game, 3, game, 0, gameLength - 3);
+                        gameLength -= 3;
+                    }
+                }
+                int first = lineStart;
+                while (first < gameLength && (game[first] == ' ' || game[first] == '\t' || game[first] == '\r')) first++;
+                boolean blank = first >= gameLength - 1;
+                if (!blank && game[first] == '%') {
+                    gameLength = lineStart; // escape line: ignore
+                } else if (!blank && game[first] == '[' && inMovetext) {
+                    // A tag after movetext starts the next game
+                    String done = takeGame(lineStart);
+                    System.arraycopy(game, lineStart, game, 0, gameLength - lineStart);
+                    gameLength -= lineStart;
+                    inMovetext = false;
+                    return done;
+                } else if (!blank && game[first] != '[') {
+                    inMovetext = true;
+                }
+            }
+        }
+
+        /** Bytes consumed from the channel so far. */
+        public long getBytesRead() { return bytesRead; }
+
+        /**
+         * Appends the next line (with its newline) to the game buffer.
+         * @return false at the end of the stream with nothing left to read
+         */
+        private boolean readLine() throws IOException {
+            boolean any = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (eof) return any;
+                    buffer.clear();
+                    int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read < 0) {
+                        eof = true;
+                        if (any) append((byte) '\n');
+                        return any;
+                    }
+                    bytesRead += read;
+                    continue;
+                }
+                byte[] array = buffer.array();
+                int p = buffer.position();
+                int limit = buffer.limit();
+                int start = p;
+                while (p < limit && array[p] != '\n') p++;
+                boolean newline = p < limit;
+                int end = newline ? p + 1 : p;
+                for (int k = start; k < end; k++) append(array[k]);
+                buffer.position(end);
+                any = true;
+                if (newline) return true;
+            }
+        }
+
+        private void append(byte b) {
+            if (gameLength == game.length) {
+                if (game.length >= MAX_GAME_BYTES) return; // oversized game: truncated, will fail to parse
+                game = java.util.Arrays.copyOf(game, game.length * 2);
+            }
+            game[gameLength++] = b;
+        }
+
+        private boolean isBlank(int from, int to) {
+            for (int k = from; k < to; k++) {
+                if (game[k] > ' ') return false;
+            }
+            return true;
+        }
+
+        private String takeGame(int length) {
+            return new String(game, 0, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // --- Writer ---
+
+    /**
+     * Writes games as PGN: the seven tag roster first, then any other tags,
+     * then SAN movetext wrapped at 80 columns.
+     */
+    public static final class Writer implements Closeable {
+        private static final int LINE_WIDTH = 80;
+        private final java.io.Writer out;
+
+        public Writer(Path path) throws IOException {
+            out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        }
+
+        public Writer(java.io.Writer out) {
+            this.out = out;
+        }
+
+        public void write(Game game) throws IOException {
+            Map<String, String> tags = new LinkedHashMap<>();
+            for (String name : SEVEN_TAG_ROSTER) tags.put(name, "?");
+            tags.put("Result", "*");
+            tags.putAll(game.getTags());
+            String startFen = game.getBoard().getStartFen();
+            if (!startFen.equals(new GameLogic.Board().getFen())) {
+                tags.put("SetUp", "1");
+                tags.put("FEN", startFen);
+            } else {
+                tags.remove("SetUp");
+                tags.remove("FEN");
+            }
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                out.write("[" + tag.getKey() + " \"" + tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"") + "\"]\n");
+            }
+            out.write('\n');
+
+            GameLogic.Board board = new GameLogic.Board();
+            board.loadBoardStateString(startFen);
+            StringBuilder line = new StringBuilder(LINE_WIDTH);
+            boolean first = true;
+            for (int move : game.getMoves()) {
+                StringBuilder token = new StringBuilder();
+                if (board.getCurrentPlayer() == GameLogic.Player.WHITE) {
+                    token.append(board.getFullMoveNumber()).append(". ");
+                } else if (first) {
+                    token.append(board.getFullMoveNumber()).append("... ");
+                }
+                token.append(toSan(board, move));
+                board.doMove(move);
+                appendToken(line, token);
+                first = false;
+            }
+            appendToken(line, new StringBuilder(tags.get("Result")));
+            out.write(line.toString());
+            out.write("\n\n");
+        }
+
+        private void appendToken(StringBuilder line, CharSequence token) throws IOException {
+            if (line.length() > 0 && line.length() + 1 + token.length() > LINE_WIDTH) {
+                out.write(line.toString());
+                out.write('\n');
+                line.setLength(0);
+            }
+            if (line.length() > 0) line.append(' ');
+            line.append(token);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // --- Command-line tool ---
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && (args[0].equals("stats") || args[0].equals("import"))) {
+            int threads = args.length >= 3 ? Integer.parseInt(args[2])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            DatabaseManager db = args[0].equals("import") ? new DatabaseManager() : null;
+            try {
+                runPipeline(Paths.get(args[1]), threads, db);
+            } finally {
+                if (db != null) db.close();
+            }
+        } else if (args.length >= 2 && args[0].equals("export")) {
+            DatabaseManager db = new DatabaseManager();
+            try (Writer writer = new Writer(Paths.get(args[1]))) {
+                int count = 0;
+                for (String name : db.getSavedGames()) {
+                    GameLogic.Board board = db.loadGame(name);
+                    if (board == null) continue;
+                    Map<String, String> tags = new LinkedHashMap<>();
+                    tags.put("Event", name);
+                    writer.write(Game.fromBoard(board, tags));
+                    count++;
+                }
+                System.out.println("Exported " + count + " games to " + args[1]);
+            } finally {
+                db.close();
+            }
+        } else {
+            System.out.println("Usage: java Pgn stats|import <file.pgn> [threads]  |  java Pgn export <out.pgn>");
+        }
+    }
+
+    // Queue item that tells a pipeline stage to finish
+    private static final Object[] END_OF_INPUT = new Object[2];
+
+    /**
+     * Reads games on the calling thread, parses them on a pool of workers and,
+     * when db is given, writes them to MySQL in batches from one writer thread.
+     * Bounded queues between the stages keep memory constant.
+     */
+    private static void runPipeline(Path file, int threads, DatabaseManager db) throws Exception {
+        BlockingQueue<Object[]> rawGames = new ArrayBlockingQueue<>(QUEUE_CAPACITY);        // {index, text}
+        BlockingQueue<Object[]> parsedGames = new ArrayBlockingQueue<>(QUEUE_CAPACITY);     // {name, board, result}
+        AtomicLong parsed = new AtomicLong();
+        AtomicLong moves = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong stored = new AtomicLong();
+        String baseName = file.getFileName().toString();
+        if (baseName.length() > 80) baseName = baseName.substring(0, 80);
+        final String prefix = baseName;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (true) {
+                        Object[] item = rawGames.take();
+                        if (item == END_OF_INPUT) break;
+                        try {
+                            Game game = parse((String) item[1]);
+                            parsed.incrementAndGet();
+                            moves.addAndGet(game.getBoard().getPly());
+                            if (db != null) parsedGames.put(new Object[] {prefix + " #" + item[0], game.getBoard(), game.getResult()});
+                        } catch (RuntimeException e) { // a bad game must not take the worker down with it
+                            if (errors.incrementAndGet() <= 10) {
+                                System.err.println("Game " + item[0] + ": "
+                                    + (e instanceof IllegalArgumentException ? e.getMessage() : e.toString()));
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "pgn-parser-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+
+        Thread dbWriter = null;
+        Exception[] dbError = new Exception[1];
+        if (db != null) {
+            dbWriter = new Thread(() -> {
+                List<String> names = new ArrayList<>(IMPORT_BATCH_SIZE);
+                List<GameLogic.Board> boards = new ArrayList<>(IMPORT_BATCH_SIZE);
+                List<String> results = new ArrayList<>(IMPORT_BATCH_SIZE);
+                try {
+                    while (true) {
+                        Object[] item = parsedGames.take();
+                        boolean done = item == END_OF_INPUT;
+                        if (!done) {
+                            names.add((String) item[0]);
+                            boards.add((GameLogic.Board) item[1]);
+                            results.add((String) item[2]);
+                        }
+                        if (names.size() == IMPORT_BATCH_SIZE || (done && !names.isEmpty())) {
+                            db.saveGames(names, boards, results);
+                            stored.addAndGet(names.size());
+                            names.clear();
+                            boards.clear();
+                            results.clear();
+                        }
+                        if (done) break;
+                    }
+                } catch (Exception e) {
+                    dbError[0] = e;
+                    parsedGames.clear();
+                    // keep draining so the parsers never block on a dead writer
+                    try {
+                        while (parsedGames.take() != END_OF_INPUT) { }
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "pgn-db-writer");
+            dbWriter.start();
+        }
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long index = 0;
+        try (Reader reader = new Reader(file)) {
+            String text;
+            while ((text = reader.nextGame()) != null) {
+                rawGames.put(new Object[] {++index, text});
+                long now = System.nanoTime();
+                if (now - lastReport > 2_000_000_000L) {
+                    lastReport = now;
+                    System.out.printf("%,d games read, %,d parsed (%,.0f games/s), %.1f MB%n",
+                        index, parsed.get(), parsed.get() / ((now - start) / 1e9), reader.getBytesRead() / 1e6);
+                }
+            }
+        }
+        for (int t = 0; t < threads; t++) rawGames.put(END_OF_INPUT);
+        for (Thread worker : workers) worker.join();
+        if (dbWriter != null) {
+            parsedGames.put(END_OF_INPUT);
+            dbWriter.join();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d games (%,d moves) in %.2f s: %,.0f games/s, %,.0f moves/s, %,d errors%n",
+            parsed.get(), moves.get(), seconds, parsed.get() / seconds, moves.get() / seconds, errors.get());
+        if (db != null) {
+            System.out.printf("%,d games stored%n", stored.get());
+            if (dbError[0] != null) throw dbError[0];
+        }
+    }
+}
@@ -0,0 +1,676 @@
+//SearchEngine.java
+
+
+import java.util.function.Consumer;
+
+/**
+ * Move-choosing engine on top of GameLogic.Board.
+ * Iterative deepening negamax alpha-beta with quiescence search, a
+ * transposition table, hash-move / MVV-LVA / killer / history move ordering,
+ * optional endgame table probes, and a hard time and/or node budget.
+ * The engine searches its own copy of the board, so it can run on a worker
+ * thread while the UI keeps using the original. Not thread-safe itself:
+ * use one SearchEngine per thread.
+ */
+public class SearchEngine {
+
+    public static final int INFINITE = 32000;
+    public static final int MATE = 31000;
+    static final int MAX_PLY = 128;
+    // Endgame table wins score below every mate, so a real mate is still preferred
+    public static final int TB_WIN = MATE - 2 * MAX_PLY;
+
+    private static final int[] PIECE_VALUES = { 100, 320, 330, 500, 900, 0 };
+    private static final int[] PHASE_WEIGHTS = { 0, 1, 1, 2, 4, 0 };
+
+    // Piece-square tables from White's point of view, indexed like Position.square() (a8 = 0)
+    private static final int[][] PIECE_SQUARE = {
+        { // Pawn
+             0,  0,  0,  0,  0,  0,  0,  0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+             5,  5, 10, 25, 25, 10,  5,  5,
+             0,  0,  0, 20, 20,  0,  0,  0,
+             5, -5,-10,  0,  0,-10, -5,  5,
+             5, 10, 10,-20,-20, 10, 10,  5,
+             0,  0,  0,  0,  0,  0,  0,  0
+        },
+        { // Knight
+            -50,-40,-30,-30,-30,-30,-40,-50,
+            -40,-20,  0,  0,  0,  0,-20,-40,
+            -30,  0, 10, 15, 15, 10,  0,-30,
+            -30,  5, 15, 20, 20, 15,  5,-30,
+            -30,  0, 15, 20, 20, 15,  0,-30,
+            -30,  5, 10, 15, 15, 10,  5,-30,
+            -40,-20,  0,  5,  5,  0,-20,-40,
+            -50,-40,-30,-30,-30,-30,-40,-50
+        },
+        { // Bishop
+            -20,-10,-10,-10,-10,-10,-10,-20,
+            -10,  0,  0,  0,  0,  0,  0,-10,
+            -10,  0,  5, 10, 10,  5,  0,-10,
+            -10,  5,  5, 10, 10,  5,  5,-10,
+            -10,  0, 10, 10, 10, 10,  0,-10,
+            -10, 10, 10, 10, 10, 10, 10,-10,
+            -10,  5,  0,  0,  0,  0,  5,-10,
+            -20,-10,-10,-10,-10,-10,-10,-20
+        },
+        { // Rook
+             0,  0,  0,  0,  0,  0,  0,  0,
+             5, 10, 10, 10, 10, 10, 10,  5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+             0,  0,  0,  5,  5,  0,  0,  0
+        },
+        { // Queen
+            -20,-10,-10, -5, -5,-10,-10,-20,
+            -10,  0,  0,  0,  0,  0,  0,-10,
+            -10,  0,  5,  5,  5,  5,  0,-10,
+             -5,  0,  5,  5,  5,  5,  0, -5,
+              0,  0,  5,  5,  5,  5,  0, -5,
+            -10,  5,  5,  5,  5,  5,  0,-10,
+            -10,  0,  5,  0,  0,  0,  0,-10,
+            -20,-10,-10, -5, -5,-10,-10,-20
+        },
+        { // King, middlegame
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -20,-30,-30,-40,-40,-30,-30,-20,
+            -10,-20,-20,-20,-20,-20,-20,-10,
+             20, 20,  0,  0,  0,  0, 20, 20,
+             20, 30, 10,  0,  0, 10, 30, 20
+        }
+    };
+
+    private static final int[] KING_ENDGAME = {
+        -50,-40,-30,-20,-20,-30,-40,-50,
+        -30,-20,-10,  0,  0,-10,-20,-30,
+        -30,-10, 20, 30, 30, 20,-10,-30,
+        -30,-10, 30, 40, 40, 30,-10,-30,
+        -30,-10, 30, 40, 40, 30,-10,-30,
+        -30,-10, 20, 30, 30, 20,-10,-30,
+        -30,-30,  0,  0,  0,  0,-30,-30,
+        -50,-30,-30,-30,-30,-30,-30,-50
+    };
+
+    /**
+     * Outcome of a search, also reported after every completed iteration.
+     */
+    public static class Result {
+        public final int bestMove;
+        public final int score;
+        public final int depth;
+        public final long nodes;
+        public final long timeMillis;
+        public final int[] pv;
+        public final boolean fromEndgameTables; // bestMove came from the endgame tables at the root; nothing was searched
+
+        Result(int bestMove, int score, int depth, long nodes, long timeMillis, int[] pv) {
+            this(bestMove, score, depth, nodes, timeMillis, pv, false);
+        }
+
+        Result(int bestMove, int score, int depth, long nodes, long timeMillis, int[] pv, boolean fromEndgameTables) {
+            this.bestMove = bestMove;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.timeMillis = timeMillis;
+            this.pv = pv;
+            this.fromEndgameTables = fromEndgameTables;
+        }
+
+        public long getNodesPerSecond() {
+            return timeMillis == 0 ? nodes * 1000 : nodes * 1000 / timeMillis;
+        }
+
+        /**
+         * Principal variation in coordinate notation, e.g. "e2e4 e7e5 g1f3".
+         */
+        public String getPrincipalVariation() {
+            StringBuilder sb = new StringBuilder();
+            for (int move : pv) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(GameLogic.Move.toString(move));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Score from the side to move's view: "+0.35" in pawns, "#3" / "#-3" for
+         * mates, or "TB win" / "TB loss" for endgame table results.
+         */
+        public String getScoreString() {
+            return scoreString(score);
+        }
+
+        @Override
+        public String toString() {
+            return "depth " + depth + " score " + getScoreString() + " nodes " + nodes
+                + " nps " + getNodesPerSecond() + " pv " + getPrincipalVariation();
+        }
+    }
+
+    /**
+     * A search score as text: "+0.35" in pawns, "#3" / "#-3" for mates, "#"
+     * for a position that is already mate, or "TB win" / "TB loss" for
+     * endgame table results.
+     */
+    public static String scoreString(int score) {
+        if (Math.abs(score) >= MATE - MAX_PLY) {
+            int plies = MATE - Math.abs(score);
+            if (plies == 0) return "#";
+            return (score > 0 ? "#" : "#-") + (plies + 1) / 2;
+        }
+        if (Math.abs(score) >= TB_WIN - MAX_PLY) {
+            return score > 0 ? "TB win" : "TB loss";
+        }
+        return String.format("%+.2f", score / 100.0);
+    }
+
+    private GameLogic.Board board;
+    private final TranspositionTable transpositionTable;
+    private volatile EndgameTables endgameTables;
+
+    // One 256-move slice per ply, so the search never allocates move lists
+    private final int[] moveBuffer = new int[MAX_PLY * 256];
+    private final int[] moveScores = new int[MAX_PLY * 256];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[] history = new int[12 * 64];
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    // Multi-PV: root moves already given a line in this iteration
+    private final int[] excludedRootMoves = new int[256];
+    private int excludedCount;
+
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private boolean aborted;
+    private volatile boolean stopRequested;
+
+    // Lazy SMP helpers start one ply deeper on odd ids so threads desynchronise
+    private int depthOffset;
+
+    public SearchEngine() {
+        this(new TranspositionTable(16));
+    }
+
+    /**
+     * @param transpositionTable table to use; may be shared with other engines
+     */
+    public SearchEngine(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public TranspositionTable getTranspositionTable() { return transpositionTable; }
+
+    void setDepthOffset(int depthOffset) { this.depthOffset = depthOffset; }
+
+    /**
+     * Tables probed at the root and inside the search; null for none.
+     */
+    public void setEndgameTables(EndgameTables endgameTables) { this.endgameTables = endgameTables; }
+
+    /**
+     * Nodes searched so far by the current or last search.
+     */
+    public long getNodes() { return nodes; }
+
+    /**
+     * Searches the given position. Any limit of 0 means "no limit"; with no
+     * limits at all the search runs to MAX_PLY or until {@link #stop()}.
+     *
+     * @param position        the position to search (it is copied, never modified)
+     * @param maxDepth        deepest iteration to start
+     * @param timeLimitMillis hard wall-clock budget for this move
+     * @param nodeLimit       hard node budget for this move
+     * @param listener        called after every completed iteration, may be null
+     * @return the result of the deepest completed iteration
+     */
+    public Result search(GameLogic.Board position, int maxDepth, long timeLimitMillis, long nodeLimit,
+                         Consumer<Result> listener) {
+        stopRequested = false;
+        transpositionTable.newSearch();
+        return run(position, maxDepth, timeLimitMillis, nodeLimit, listener);
+    }
+
+    /**
+     * Same as {@link #search} but keeps a pending stop request, so a caller that
+     * prepared the engine with {@link #resetStop()} on another thread cannot lose
+     * a stop issued before this thread got going. Nor does it start a new
+     * transposition table generation: engines sharing a table search as one,
+     * and the caller starts the generation once for all of them.
+     */
+    Result run(GameLogic.Board position, int maxDepth, long timeLimitMillis, long nodeLimit,
+               Consumer<Result> listener) {
+        long start = prepare(position, timeLimitMillis, nodeLimit);
+        if (maxDepth <= 0 || maxDepth >= MAX_PLY) maxDepth = MAX_PLY - 1;
+
+        // A position in the endgame tables needs no search: play the move the tables prefer
+        EndgameTables tables = endgameTables;
+        if (tables != null) {
+            int tbMove = tables.bestMove(board);
+            if (tbMove != GameLogic.Move.NONE) {
+                Result result = new Result(tbMove, endgameTableScore(tables.probe(board), 0), 0, 0,
+                    System.currentTimeMillis() - start, new int[] {tbMove}, true);
+                if (listener != null) listener.accept(result);
+                return result;
+            }
+        }
+
+        Result result = new Result(firstLegalMove(), 0, 0, 0, 0, new int[0]);
+        for (int depth = 1 + depthOffset; depth <= maxDepth; depth++) {
+            int score = negamax(depth, -INFINITE, INFINITE, 0);
+            if (aborted) break;
+
+            int[] pv = completePv(java.util.Arrays.copyOf(pvTable[0], pvLength[0]), depth);
+            long elapsed = System.currentTimeMillis() - start;
+            int bestMove = pv.length > 0 ? pv[0] : result.bestMove;
+            result = new Result(bestMove, score, depth, nodes, elapsed, pv);
+            if (listener != null) listener.accept(result);
+
+            // A found mate or endgame table result will not improve, and an iteration we cannot finish is wasted time
+            if (Math.abs(score) >= TB_WIN - MAX_PLY) break;
+            if (timeLimitMillis > 0 && elapsed * 2 > timeLimitMillis) break;
+        }
+        return result;
+    }
+
+    /**
+     * Multi-PV search: the best {@code lines} root moves, each with its own
+     * score and line. Every iteration searches the best line first, then each
+     * further line with the moves of the lines above it excluded at the root,
+     * so the transposition table makes the extra passes cheap. Endgame table
+     * positions are searched too, to rank more than one move. See
+     * {@link #search} for the limits.
+     *
+     * @param listener called with the lines, best first, after every completed iteration
+     * @return the lines of the deepest completed iteration, best first
+     */
+    public Result[] searchMultiPv(GameLogic.Board position, int lines, int maxDepth, long timeLimitMillis,
+                                  long nodeLimit, Consumer<Result[]> listener) {
+        stopRequested = false;
+        transpositionTable.newSearch();
+        return runMultiPv(position, lines, maxDepth, timeLimitMillis, nodeLimit, listener);
+    }
+
+    /**
+     * {@link #searchMultiPv} without clearing a pending stop request or starting
+     * a table generation, like {@link #run}.
+     */
+    Result[] runMultiPv(GameLogic.Board position, int lines, int maxDepth, long timeLimitMillis, long nodeLimit,
+                        Consumer<Result[]> listener) {
+        long start = prepare(position, timeLimitMillis, nodeLimit);
+        if (maxDepth <= 0 || maxDepth >= MAX_PLY) maxDepth = MAX_PLY - 1;
+        lines = Math.min(lines, board.generateLegalMoves(moveBuffer, 0));
+
+        Result[] results = new Result[0];
+        try {
+            for (int depth = 1; depth <= maxDepth && lines > 0; depth++) {
+                Result[] iteration = new Result[lines];
+                excludedCount = 0;
+                boolean allDecided = true;
+                for (int k = 0; k < lines; k++) {
+                    int score = negamax(depth, -INFINITE, INFINITE, 0);
+                    if (aborted) break;
+                    int[] pv = completePv(java.util.Arrays.copyOf(pvTable[0], pvLength[0]), depth);
+                    iteration[k] = new Result(pv[0], score, depth, nodes, System.currentTimeMillis() - start, pv);
+                    excludedRootMoves[excludedCount++] = pv[0];
+                    allDecided &= Math.abs(score) >= TB_WIN - MAX_PLY;
+                }
+                if (aborted) break;
+
+                // A later line can come back higher than an earlier one when the search is unstable
+                java.util.Arrays.sort(iteration, (a, b) -> Integer.compare(b.score, a.score));
+                results = iteration;
+                if (listener != null) listener.accept(results);
+
+                long elapsed = System.currentTimeMillis() - start;
+                if (allDecided) break;
+                if (timeLimitMillis > 0 && elapsed * 2 > timeLimitMillis) break;
+            }
+        } finally {
+            excludedCount = 0;
+        }
+        return results;
+    }
+
+    // Common setup of a search on a private copy of the position; returns the start time
+    private long prepare(GameLogic.Board position, long timeLimitMillis, long nodeLimit) {
+        board = new GameLogic.Board(position);
+        long start = System.currentTimeMillis();
+        deadline = timeLimitMillis > 0 ? start + timeLimitMillis : Long.MAX_VALUE;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        nodes = 0;
+        aborted = false;
+        excludedCount = 0;
+        clearOrderingTables();
+        return start;
+    }
+
+    private boolean isExcludedAtRoot(int move) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (excludedRootMoves[i] == move) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Asks a running search to return as soon as possible. Safe to call from any thread.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    void resetStop() {
+        stopRequested = false;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if ((nodes & 2047) == 0) checkLimits();
+        if (aborted) return 0;
+
+        GameLogic.Player us = board.getCurrentPlayer();
+        boolean inCheck = board.isKingInCheck(us);
+        if (inCheck) depth++;
+        if (depth <= 0) return quiescence(alpha, beta, ply);
+        nodes++;
+        if (ply >= MAX_PLY - 1) return evaluate(board);
+
+        // Repetitions, the fifty-move rule and dead positions are draws; one repetition is enough here
+        if (ply > 0 && (board.isRepetition() || board.isFiftyMoveDraw() || board.isInsufficientMaterial())) {
+            return 0;
+        }
+
+        // Endgame tables: an exact result beats any search below this node
+        EndgameTables tables = endgameTables;
+        if (ply > 0 && tables != null && Long.bitCount(board.getOccupied()) <= tables.getMaxPieces()) {
+            int value = tables.probe(board);
+            if (value != EndgameTables.NOT_FOUND) return endgameTableScore(value, ply);
+        }
+
+        // Transposition table: reuse the best move, and the score when it was searched deep enough
+        long key = board.getHash();
+        long entry = transpositionTable.probe(key);
+        int hashMove = GameLogic.Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int offset = ply * 256;
+        int end = board.generateMoves(moveBuffer, offset);
+        scoreMoves(offset, end, ply, hashMove);
+
+        int originalAlpha = alpha;
+        int bestMove = GameLogic.Move.NONE;
+        int legalMoves = 0;
+        // A root searched without some of its moves must not leave its score in the table
+        boolean storeEntry = ply > 0 || excludedCount == 0;
+        for (int i = offset; i < end; i++) {
+            int move = pickMove(i, end);
+            if (ply == 0 && excludedCount > 0 && isExcludedAtRoot(move)) continue;
+            board.doMove(move);
+            if (board.isKingInCheck(us)) {
+                board.undoMove();
+                continue;
+            }
+            legalMoves++;
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            board.undoMove();
+            if (aborted) return 0;
+
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                updatePv(ply, move);
+                if (score >= beta) {
+                    if (!GameLogic.Move.isCapture(move)) {
+                        rememberQuietCutoff(move, ply, depth);
+                    }
+                    if (storeEntry) {
+                        transpositionTable.store(key, move, scoreToTable(beta, ply), depth, TranspositionTable.BOUND_LOWER);
+                    }
+                    return beta;
+                }
+            }
+        }
+
+        if (legalMoves == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        if (storeEntry) {
+            transpositionTable.store(key, bestMove, scoreToTable(alpha, ply), depth,
+                alpha > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER);
+        }
+        return alpha;
+    }
+
+    // Mate and endgame table scores are stored relative to the node, not the root, so they stay valid at any ply
+    private static int scoreToTable(int score, int ply) {
+        if (score >= TB_WIN - MAX_PLY) return score + ply;
+        if (score <= -TB_WIN + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= TB_WIN - MAX_PLY) return score - ply;
+        if (score <= -TB_WIN + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    // Sooner endgame table wins score higher, like mates
+    private static int endgameTableScore(int value, int ply) {
+        if (value > 0) return TB_WIN - ply;
+        if (value < 0) return -TB_WIN + ply;
+        return 0;
+    }
+
+    /**
+     * Resolves captures until the position is quiet, so the static evaluation
+     * is never taken in the middle of an exchange.
+     */
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if ((nodes & 2047) == 0) checkLimits();
+        if (aborted) return 0;
+        nodes++;
+
+        int standPat = evaluate(board);
+        if (standPat >= beta) return beta;
+        if (standPat > alpha) alpha = standPat;
+        if (ply >= MAX_PLY - 1) return alpha;
+
+        GameLogic.Player us = board.getCurrentPlayer();
+        int offset = ply * 256;
+        int end = board.generateCaptures(moveBuffer, offset);
+        scoreMoves(offset, end, ply, GameLogic.Move.NONE);
+
+        for (int i = offset; i < end; i++) {
+            int move = pickMove(i, end);
+            board.doMove(move);
+            if (board.isKingInCheck(us)) {
+                board.undoMove();
+                continue;
+            }
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            board.undoMove();
+            if (aborted) return 0;
+
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (score >= beta) return beta;
+            }
+        }
+        return alpha;
+    }
+
+    // --- Move ordering ---
+
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+
+    private void scoreMoves(int offset, int end, int ply, int hashMove) {
+        for (int i = offset; i < end; i++) {
+            int move = moveBuffer[i];
+            int from = GameLogic.Move.from(move);
+            int to = GameLogic.Move.to(move);
+            int score;
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (GameLogic.Move.isCapture(move) || GameLogic.Move.promotion(move) != 0) {
+                // MVV-LVA: most valuable victim first, then least valuable attacker
+                int victim = GameLogic.Move.isEnPassant(move) || !GameLogic.Move.isCapture(move)
+                    ? GameLogic.PAWN : board.getPieceCode(to) % 6;
+                int attacker = board.getPieceCode(from) % 6;
+                score = CAPTURE_SCORE + PIECE_VALUES[victim] * 16 - attacker + PIECE_VALUES[GameLogic.Move.promotion(move)] * 16;
+            } else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[board.getPieceCode(from) * 64 + to];
+            }
+            moveScores[i] = score;
+        }
+    }
+
+    /**
+     * Selection step: swaps the best remaining move into slot i and returns it.
+     */
+    private int pickMove(int i, int end) {
+        int best = i;
+        for (int j = i + 1; j < end; j++) {
+            if (moveScores[j] > moveScores[best]) best = j;
+        }
+        if (best != i) {
+            int move = moveBuffer[best];
+            moveBuffer[best] = moveBuffer[i];
+            moveBuffer[i] = move;
+            int score = moveScores[best];
+            moveScores[best] = moveScores[i];
+            moveScores[i] = score;
+        }
+        return moveBuffer[i];
+    }
+
+    private void rememberQuietCutoff(int move, int ply, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        // The move is already undone, so the piece is back on its from-square
+        int index = board.getPieceCode(GameLogic.Move.from(move)) * 64 + GameLogic.Move.to(move);
+        history[index] += depth * depth;
+        if (history[index] >= KILLER_SCORE) {
+            for (int i = 0; i < history.length; i++) history[i] /= 2;
+        }
+    }
+
+    private void clearOrderingTables() {
+        for (int[] k : killers) {
+            k[0] = GameLogic.Move.NONE;
+            k[1] = GameLogic.Move.NONE;
+        }
+        java.util.Arrays.fill(history, 0);
+    }
+
+    private void updatePv(int ply, int move) {
+        pvTable[ply][ply] = move;
+        System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+        pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+    }
+
+    /**
+     * Transposition-table cutoffs cut the triangular PV short, so the tail is
+     * filled in by following stored best moves while they are legal.
+     */
+    private int[] completePv(int[] pv, int depth) {
+        int played = 0;
+        for (int move : pv) {
+            board.doMove(move);
+            played++;
+        }
+        int[] legal = new int[256];
+        while (pv.length < depth) {
+            long entry = transpositionTable.probe(board.getHash());
+            int move = entry == 0 ? GameLogic.Move.NONE : TranspositionTable.move(entry);
+            if (move == GameLogic.Move.NONE || !contains(legal, board.generateLegalMoves(legal, 0), move)) break;
+            pv = java.util.Arrays.copyOf(pv, pv.length + 1);
+            pv[pv.length - 1] = move;
+            board.doMove(move);
+            played++;
+        }
+        for (int i = 0; i < played; i++) board.undoMove();
+        return pv;
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    private void checkLimits() {
+        if (stopRequested || nodes >= nodeLimit || System.currentTimeMillis() >= deadline) {
+            aborted = true;
+        }
+    }
+
+    private int firstLegalMove() {
+        int count = board.generateLegalMoves(moveBuffer, 0);
+        return count > 0 ? moveBuffer[0] : GameLogic.Move.NONE;
+    }
+
+    // --- Evaluation ---
+
+    /**
+     * Static evaluation in centipawns from the side to move's point of view:
+     * material plus piece-square tables, with the king table blended from
+     * middlegame to endgame as pieces come off.
+     */
+    public static int evaluate(GameLogic.Board board) {
+        int score = 0;
+        int phase = 0;
+        int kingMiddlegame = 0;
+        int kingEndgame = 0;
+        long pieces = board.getOccupied();
+        while (pieces != 0) {
+            int sq = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            int code = board.getPieceCode(sq);
+            int type = code % 6;
+            boolean white = code < 6;
+            int tableSquare = white ? sq : sq ^ 56;
+            int sign = white ? 1 : -1;
+            phase += PHASE_WEIGHTS[type];
+            if (type == GameLogic.KING) {
+                kingMiddlegame += sign * PIECE_SQUARE[GameLogic.KING][tableSquare];
+                kingEndgame += sign * KING_ENDGAME[tableSquare];
+            } else {
+                score += sign * (PIECE_VALUES[type] + PIECE_SQUARE[type][tableSquare]);
+            }
+        }
+        phase = Math.min(phase, 24);
+        score += (kingMiddlegame * phase + kingEndgame * (24 - phase)) / 24;
+        return board.getCurrentPlayer() == GameLogic.Player.WHITE ? score : -score;
+    }
+}
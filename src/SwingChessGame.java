@@ -2,7 +2,6 @@
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
 
 /**
  * Main application class.
@@ -15,10 +14,49 @@ public class SwingChessGame extends JFrame {
     private JLabel statusLabel;
     private GameLogic.Board logicBoard;
     private DatabaseManager dbManager;
+    private ExplorerPanel explorerPanel; // only when the database is connected
+    private AnalysisPanel analysisPanel;
+    private AnalysisPanel.EvalBar evalBar;
+    private JCheckBox computerCheckBox;
+    private JCheckBox analyzeCheckBox;
+    private JButton claimDrawButton;
+
+    // Play vs Computer: the engine plays Black and searches on a SwingWorker thread.
+    // Search threads default to one per core; override with -Dchess.engine.threads=N
+    private static final long COMPUTER_MOVE_TIME_MS = 2000;
+    private static final int ENGINE_HASH_MB = 64;
+    private static final GameLogic.Player COMPUTER_PLAYER = GameLogic.Player.BLACK;
+    private final ParallelSearch engine = new ParallelSearch(
+        Integer.getInteger("chess.engine.threads", Runtime.getRuntime().availableProcessors()), ENGINE_HASH_MB);
+    private boolean playVsComputer;
+
+    // Optional opening book: -Dchess.book=book.bin, a standard Polyglot book, or one built
+    // with "java OpeningBook build ... native" together with -Dchess.book.keys=native
+    private static final String BOOK_PATH = System.getProperty("chess.book");
+    private static final boolean BOOK_NATIVE_KEYS = "native".equals(System.getProperty("chess.book.keys"));
+
+    // Optional endgame tables: -Dchess.endgametables=<directory written by "java EndgameTables generate">
+    private static final String ENDGAME_TABLES_PATH = System.getProperty("chess.endgametables");
+    private EndgameTables endgameTables;
+    private SwingWorker<ParallelSearch.Result, Void> engineTask;
+    private String engineStatus = "";
+
+    // Background analysis of the shown position: endgame table verdict, and engine lines
+    // when the computer is not playing. Shares the engine's transposition table.
+    private static final long ANALYSIS_TIME_MS = 3000;
+    private static final int ANALYSIS_LINE_MOVES = 5;
+    // Analyze mode: an endless multi-PV search, restarted on every move
+    private static final int ANALYZE_LINES = 3;
+    private boolean analyzeMode;
+    private final AnalysisWorker analysisWorker = new AnalysisWorker(engine.getTranspositionTable());
+    private String analysisStatus = "";
+    private long analyzedHash;
+    private boolean analyzed;
 
     public SwingChessGame() {
         // Initialize backend components
         logicBoard = new GameLogic.Board();
+        logicBoard.setPromotionChooser(this::askPromotion);
         try {
             dbManager = new DatabaseManager();
         } catch (RuntimeException e) {
@@ -30,9 +68,34 @@ public class SwingChessGame extends JFrame {
             dbManager = null; 
         }
 
+        if (BOOK_PATH != null) {
+            try {
+                engine.setOpeningBook(new OpeningBook(java.nio.file.Paths.get(BOOK_PATH),
+                    BOOK_NATIVE_KEYS ? OpeningBook.NATIVE_KEYS : OpeningBook.POLYGLOT_KEYS));
+            } catch (java.io.IOException e) {
+                System.err.println("Opening book not loaded: " + e.getMessage());
+            }
+        }
+        if (ENDGAME_TABLES_PATH != null) {
+            try {
+                endgameTables = new EndgameTables(java.nio.file.Paths.get(ENDGAME_TABLES_PATH));
+                engine.setEndgameTables(endgameTables);
+                analysisWorker.setEndgameTables(endgameTables);
+            } catch (java.io.IOException e) {
+                System.err.println("Endgame tables not loaded: " + e.getMessage());
+            }
+        }
+
         setTitle("Java Swing Chess");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setResizable(false);
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                // Let queued saves finish before the JVM exits
+                analysisWorker.shutdown();
+                if (dbManager != null) dbManager.close();
+            }
+        });
 
         // Main container
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -41,12 +104,28 @@ public class SwingChessGame extends JFrame {
         boardPanel = new BoardPanel(logicBoard);
         mainPanel.add(boardPanel, BorderLayout.CENTER);
 
+        // Analyze mode: evaluation bar beside the board, best lines in the side panel
+        evalBar = new AnalysisPanel.EvalBar();
+        evalBar.setVisible(false);
+        mainPanel.add(evalBar, BorderLayout.WEST);
+        JPanel sidePanel = new JPanel();
+        sidePanel.setLayout(new BoxLayout(sidePanel, BoxLayout.Y_AXIS));
+        analysisPanel = new AnalysisPanel();
+        analysisPanel.setVisible(false);
+        sidePanel.add(analysisPanel);
+
+        // Opening explorer over the stored games
+        if (dbManager != null) {
+            explorerPanel = new ExplorerPanel(dbManager);
+            sidePanel.add(explorerPanel);
+        }
+        mainPanel.add(sidePanel, BorderLayout.EAST);
+
         // Status Panel
         JPanel statusPanel = new JPanel(new BorderLayout());
         statusPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
         
         statusLabel = new JLabel();
-        updateStatus();
         statusPanel.add(statusLabel, BorderLayout.CENTER);
 
         // Button Panel
@@ -60,13 +139,31 @@ public class SwingChessGame extends JFrame {
         JButton loadButton = new JButton("Load Game");
         loadButton.addActionListener(e -> loadGame());
 
+        JButton takeBackButton = new JButton("Takeback");
+        takeBackButton.addActionListener(e -> takeBack());
+
+        // Enabled by updateStatus while a threefold repetition or fifty-move draw can be claimed
+        claimDrawButton = new JButton("Claim Draw");
+        claimDrawButton.addActionListener(e -> claimDraw());
+
+        computerCheckBox = new JCheckBox("Play vs Computer");
+        computerCheckBox.addActionListener(e -> setPlayVsComputer(computerCheckBox.isSelected()));
+
+        analyzeCheckBox = new JCheckBox("Analyze");
+        analyzeCheckBox.addActionListener(e -> setAnalyzeMode(analyzeCheckBox.isSelected()));
+
+        buttonPanel.add(analyzeCheckBox);
+        buttonPanel.add(computerCheckBox);
+        buttonPanel.add(takeBackButton);
+        buttonPanel.add(claimDrawButton);
         buttonPanel.add(saveButton);
         buttonPanel.add(loadButton);
         buttonPanel.add(resetButton);
         statusPanel.add(buttonPanel, BorderLayout.EAST);
 
         mainPanel.add(statusPanel, BorderLayout.SOUTH);
-        
+        updateStatus();
+
         add(mainPanel);
         pack(); // Size the frame
         setLocationRelativeTo(null); // Center on screen
@@ -79,22 +176,249 @@ public class SwingChessGame extends JFrame {
      * Resets the game to the initial state.
      */
     public void resetGame() {
+        cancelComputerMove();
         logicBoard.setupNewGame();
         boardPanel.setSelectedPos(null);
         boardPanel.setValidMoves(new java.util.ArrayList<>());
         updateStatus();
-        boardPanel.repaint();
+        boardPanel.repaintChanges();
     }
     
     /**
-     * Updates the status label from the logic board.
+     * Undoes the last move, using the board's undo stack.
+     */
+    public void takeBack() {
+        cancelComputerMove();
+        if (logicBoard.takeBack()) {
+            // Against the computer, go back to the human's last turn
+            if (playVsComputer && logicBoard.getCurrentPlayer() == COMPUTER_PLAYER) {
+                logicBoard.takeBack();
+            }
+            boardPanel.setSelectedPos(null);
+            boardPanel.setValidMoves(new java.util.ArrayList<>());
+            updateStatus();
+            boardPanel.repaintChanges();
+        }
+    }
+
+    /**
+     * Ends the game as a draw by threefold repetition or the fifty-move rule.
+     */
+    public void claimDraw() {
+        if (!logicBoard.canClaimDraw()) return;
+        cancelComputerMove();
+        logicBoard.claimDraw();
+        analyzed = false; // same position, but the game is now over
+        updateStatus();
+    }
+
+    /**
+     * Promotion chooser for the human player's board: asks which piece to
+     * promote to. Runs on the EDT, from the BoardPanel's mouse handler.
+     */
+    private int askPromotion(GameLogic.Player player, GameLogic.Position from, GameLogic.Position to) {
+        String[] options = {"Queen", "Rook", "Bishop", "Knight"};
+        int choice = JOptionPane.showOptionDialog(this,
+            "Promote pawn to:",
+            "Pawn Promotion",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.PLAIN_MESSAGE,
+            null, options, options[0]);
+
+        switch (choice) {
+            case 0: default: return GameLogic.QUEEN;
+            case 1: return GameLogic.ROOK;
+            case 2: return GameLogic.BISHOP;
+            case 3: return GameLogic.KNIGHT;
+        }
+    }
+
+    /**
+     * Updates the status label, and the explorer panel, from the logic board.
+     * A new position is also handed to the analysis worker; its findings are
+     * added to the label when they arrive.
      */
     public void updateStatus() {
-        statusLabel.setText(logicBoard.getStatusMessage());
+        if (!analyzed || logicBoard.getHash() != analyzedHash) {
+            requestAnalysis();
+        }
+        showStatus();
+        claimDrawButton.setEnabled(logicBoard.canClaimDraw());
+        if (explorerPanel != null) {
+            explorerPanel.showPosition(logicBoard); // no-op if the position is unchanged
+        }
+    }
+
+    private void showStatus() {
+        statusLabel.setText(logicBoard.getStatusMessage() + analysisStatus + engineStatus);
+    }
+
+    /**
+     * Starts analysing the shown position, dropping whatever was being analysed.
+     * In Analyze mode the search runs until the next move and fills the analysis
+     * panel; otherwise engine lines are only searched for while the computer is
+     * not playing. Either way the search reuses the shared transposition table,
+     * so a restart after a move picks up most of the previous work.
+     */
+    private void requestAnalysis() {
+        analyzed = true;
+        analyzedHash = logicBoard.getHash();
+        analysisStatus = "";
+        if (analyzeMode) {
+            analysisWorker.analyze(logicBoard, AnalysisWorker.INFINITE, ANALYZE_LINES, analysis -> {
+                analysisPanel.showAnalysis(analysis);
+                evalBar.setScore(analysis.getScore(), analysis.getScoreString());
+                analysisStatus = analysisStatus(analysis, false);
+                showStatus();
+            });
+        } else {
+            analysisWorker.analyze(logicBoard, playVsComputer ? 0 : ANALYSIS_TIME_MS, analysis -> {
+                analysisStatus = analysisStatus(analysis, true);
+                showStatus();
+            });
+        }
+    }
+
+    /**
+     * The analysis as status text: the endgame table verdict, e.g. "  White: endgame table
+     * win in 13" (plies to the next capture, pawn move or mate), and optionally the
+     * engine's evaluation and line, e.g. "  Eval +0.35 (depth 9) e2e4 e7e5 g1f3".
+     */
+    private static String analysisStatus(AnalysisWorker.Analysis analysis, boolean withLine) {
+        StringBuilder sb = new StringBuilder();
+        int value = analysis.endgameTableValue;
+        if (value == 0) {
+            sb.append("  Endgame table draw");
+        } else if (value != EndgameTables.NOT_FOUND) {
+            GameLogic.Player winner = value > 0 ? analysis.snapshot.sideToMove : analysis.snapshot.sideToMove.opponent();
+            sb.append("  ").append(winner == GameLogic.Player.WHITE ? "White" : "Black")
+                .append(": endgame table win in ").append(EndgameTables.dtz(value));
+        }
+        SearchEngine.Result search = analysis.search;
+        if (withLine && search != null && !search.fromEndgameTables) {
+            sb.append("  Eval ").append(analysis.getScoreString()).append(" (depth ").append(search.depth).append(')');
+            for (int i = 0; i < Math.min(ANALYSIS_LINE_MOVES, search.pv.length); i++) {
+                sb.append(' ').append(GameLogic.Move.toString(search.pv[i]));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Called by the BoardPanel after the human has made a move.
+     */
+    public void onMoveMade() {
+        engineStatus = "";
+        updateStatus();
+        startComputerMoveIfNeeded();
+    }
+
+    private void setPlayVsComputer(boolean enabled) {
+        playVsComputer = enabled;
+        if (enabled && analyzeMode) {
+            analyzeCheckBox.setSelected(false);
+            setAnalyzeMode(false); // one search at a time
+        }
+        requestAnalysis(); // with or without engine lines
+        if (enabled) {
+            startComputerMoveIfNeeded();
+        } else {
+            cancelComputerMove();
+            updateStatus();
+        }
     }
 
     /**
-     * Prompts the user to save the current game.
+     * Analyze mode, for reviewing games: the evaluation bar and the analysis
+     * panel follow an endless search of the shown position. Turns off Play vs
+     * Computer, so the two searches never compete.
+     */
+    private void setAnalyzeMode(boolean enabled) {
+        analyzeMode = enabled;
+        if (enabled && playVsComputer) {
+            computerCheckBox.setSelected(false);
+            playVsComputer = false;
+            cancelComputerMove();
+        }
+        if (!enabled) analysisPanel.clear();
+        evalBar.setVisible(enabled);
+        analysisPanel.setVisible(enabled);
+        revalidate();
+        requestAnalysis();
+        showStatus();
+    }
+
+    /**
+     * Starts the engine off the Event Dispatch Thread when it is the computer's turn.
+     * The search gets its own snapshot of the board, taken here on the EDT.
+     */
+    private void startComputerMoveIfNeeded() {
+        if (!playVsComputer || engineTask != null || logicBoard.isGameOver()
+                || logicBoard.getCurrentPlayer() != COMPUTER_PLAYER) {
+            return;
+        }
+        final GameLogic.Board snapshot = new GameLogic.Board(logicBoard);
+        final GameLogic.Board targetBoard = logicBoard;
+        boardPanel.setInputEnabled(false);
+        engineStatus = "  Computer is thinking...";
+        updateStatus();
+
+        engineTask = new SwingWorker<ParallelSearch.Result, Void>() {
+            @Override
+            protected ParallelSearch.Result doInBackground() {
+                return engine.search(snapshot, 0, COMPUTER_MOVE_TIME_MS, 0, null);
+            }
+
+            @Override
+            protected void done() {
+                if (engineTask != this) return; // cancelled or superseded
+                engineTask = null;
+                boardPanel.setInputEnabled(true);
+                boolean moved = false;
+                try {
+                    ParallelSearch.Result parallel = get();
+                    SearchEngine.Result result = parallel.best;
+                    if (logicBoard == targetBoard && parallel.fromBook && targetBoard.makeMove(result.bestMove)) {
+                        engineStatus = "  Computer played " + GameLogic.Move.toString(result.bestMove) + " (book)";
+                        moved = true;
+                    } else if (logicBoard == targetBoard && result.fromEndgameTables && targetBoard.makeMove(result.bestMove)) {
+                        engineStatus = "  Computer played " + GameLogic.Move.toString(result.bestMove) + " (endgame table)";
+                        moved = true;
+                    } else if (logicBoard == targetBoard && targetBoard.makeMove(result.bestMove)) {
+                        engineStatus = "  Computer played " + GameLogic.Move.toString(result.bestMove)
+                            + " (depth " + result.depth + ", " + result.getScoreString()
+                            + ", " + parallel.getNodesPerSecond() / 1000 + " kN/s on " + parallel.threadNodes.length
+                            + " threads, pv " + result.getPrincipalVariation() + ")";
+                        moved = true;
+                    }
+                } catch (Exception e) {
+                    engineStatus = "  Computer failed: " + e.getMessage();
+                    e.printStackTrace();
+                }
+                updateStatus();
+                if (moved) {
+                    boardPanel.animateLastMove();
+                } else {
+                    boardPanel.repaintChanges();
+                }
+            }
+        };
+        engineTask.execute();
+    }
+
+    private void cancelComputerMove() {
+        if (engineTask != null) {
+            engine.stop();
+            engineTask.cancel(false);
+            engineTask = null;
+            boardPanel.setInputEnabled(true);
+        }
+        engineStatus = "";
+    }
+
+    /**
+     * Prompts the user to save the current game. The write runs in the
+     * background; the result is reported back on the EDT.
      */
     private void saveGame() {
         if (dbManager == null) {
@@ -107,28 +431,31 @@ public class SwingChessGame extends JFrame {
             JOptionPane.PLAIN_MESSAGE);
         
         if (gameName != null && !gameName.trim().isEmpty()) {
-            try {
-                dbManager.saveGame(gameName, logicBoard);
-                JOptionPane.showMessageDialog(this, "Game '" + gameName + "' saved successfully!");
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this,
-                    "Failed to save game: " + e.getMessage(),
-                    "Database Error", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+            dbManager.saveGameAsync(gameName, logicBoard).whenCompleteAsync((ignored, error) -> {
+                if (error != null) {
+                    showDbFailure("Failed to save game", error);
+                } else {
+                    if (explorerPanel != null) explorerPanel.reload(logicBoard);
+                    JOptionPane.showMessageDialog(this, "Game '" + gameName + "' saved successfully!");
+                }
+            }, SwingUtilities::invokeLater);
         }
     }
 
     /**
-     * Prompts the user to load a saved game.
+     * Prompts the user to load a saved game. Listing and loading run in the
+     * background; the dialogs and the board swap happen on the EDT.
      */
     private void loadGame() {
         if (dbManager == null) {
             showDbError();
             return;
         }
-        try {
-            List<String> gameNames = dbManager.getSavedGames();
+        dbManager.getSavedGamesAsync().whenCompleteAsync((gameNames, error) -> {
+            if (error != null) {
+                showDbFailure("Failed to load games", error);
+                return;
+            }
             if (gameNames.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "No saved games found.", "Load Game", JOptionPane.INFORMATION_MESSAGE);
                 return;
@@ -143,32 +470,42 @@ public class SwingChessGame extends JFrame {
                 options,
                 options[0]);
 
-         // ...
             if (gameName != null) {
-                GameLogic.Board loadedBoard = dbManager.loadGame(gameName);
-                if (loadedBoard != null) {
-                    this.logicBoard = loadedBoard;
-                    boardPanel.setLogicBoard(loadedBoard); // Link panel to new board
-                    
-                    // --- FIX ---
-                    // Don't call resetGame(), as it re-initializes the board.
-                    // Instead, just reset the UI selection state.
-                    boardPanel.setSelectedPos(null);
-                    boardPanel.setValidMoves(new java.util.ArrayList<>());
-                    // --- END FIX ---
-                    
-                    updateStatus(); // Get status from the newly loaded board
-                    boardPanel.repaint(); // Redraw with the loaded board's state
-                    JOptionPane.showMessageDialog(this, "Game '" + gameName + "' loaded successfully!");
-                }
+                dbManager.loadGameAsync(gameName).whenCompleteAsync((loadedBoard, loadError) -> {
+                    if (loadError != null) {
+                        showDbFailure("Failed to load game", loadError);
+                    } else if (loadedBoard != null) {
+                        showLoadedGame(gameName, loadedBoard);
+                    }
+                }, SwingUtilities::invokeLater);
             }
-// ... 
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                "Failed to load games: " + e.getMessage(),
-                "Database Error", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-        }
+        }, SwingUtilities::invokeLater);
+    }
+
+    private void showLoadedGame(String gameName, GameLogic.Board loadedBoard) {
+        cancelComputerMove();
+        loadedBoard.setPromotionChooser(this::askPromotion);
+        this.logicBoard = loadedBoard;
+        boardPanel.setLogicBoard(loadedBoard); // Link panel to new board
+
+        // Don't call resetGame(), as it re-initializes the board.
+        // Instead, just reset the UI selection state.
+        boardPanel.setSelectedPos(null);
+        boardPanel.setValidMoves(new java.util.ArrayList<>());
+
+        updateStatus(); // Get status from the newly loaded board
+        boardPanel.repaintChanges(); // Redraw with the loaded board's state
+        JOptionPane.showMessageDialog(this, "Game '" + gameName + "' loaded successfully!");
+        startComputerMoveIfNeeded();
+    }
+
+    private void showDbFailure(String what, Throwable error) {
+        Throwable cause = error instanceof java.util.concurrent.CompletionException && error.getCause() != null
+            ? error.getCause() : error;
+        JOptionPane.showMessageDialog(this,
+            what + ": " + cause.getMessage(),
+            "Database Error", JOptionPane.ERROR_MESSAGE);
+        cause.printStackTrace();
     }
 
     private void showDbError() {
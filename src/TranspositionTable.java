@@ -0,0 +1,165 @@
+//TranspositionTable.java
+
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size hash table of search results, keyed by GameLogic.Board.getHash().
+ * Safe to share between search threads without locks.
+ *
+ * Each entry is two 64-bit words in one big long[]: (key XOR data) and data.
+ * Both words are read and written atomically, but not together, so a reader
+ * can see one half of a concurrent write. Checking (word0 XOR word1) == key
+ * rejects such torn entries, along with plain index collisions.
+ * Entries are grouped in buckets of four (64 bytes, one cache line).
+ */
+public class TranspositionTable {
+
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2; // score is at least the stored value (beta cutoff)
+    public static final int BOUND_UPPER = 3; // score is at most the stored value (no move raised alpha)
+
+    private static final int ENTRIES_PER_BUCKET = 4;
+    private static final int LONGS_PER_BUCKET = ENTRIES_PER_BUCKET * 2;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Data word layout: move 0-19, score 20-35 (signed), depth 36-43, bound 44-45, age 46-53
+    private static final int SCORE_SHIFT = 20;
+    private static final int DEPTH_SHIFT = 36;
+    private static final int BOUND_SHIFT = 44;
+    private static final int AGE_SHIFT = 46;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * @param sizeMb memory to use; rounded down to a power-of-two number of buckets
+     */
+    public TranspositionTable(int sizeMb) {
+        long bytes = Math.max(1, sizeMb) * 1024L * 1024L;
+        long buckets = Long.highestOneBit(bytes / (LONGS_PER_BUCKET * 8));
+        buckets = Math.min(buckets, 1L << 27); // keeps the long[] below the JVM array limit
+        table = new long[(int) buckets * LONGS_PER_BUCKET];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Starts a new search generation. Entries from older generations are
+     * replaced first, regardless of their depth.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Returns the data word stored for this position, or 0 if there is none.
+     * Decode it with {@link #move}, {@link #score}, {@link #depth} and {@link #bound}.
+     */
+    public long probe(long key) {
+        probes.increment();
+        int base = bucketIndex(key);
+        for (int i = 0; i < LONGS_PER_BUCKET; i += 2) {
+            long data = (long) WORDS.getOpaque(table, base + i + 1);
+            long check = (long) WORDS.getOpaque(table, base + i);
+            if (data != 0 && (check ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result. Within the bucket the same position is updated in
+     * place; otherwise the entry that is oldest and then shallowest is replaced.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucketIndex(key);
+        int currentAge = age;
+        int victim = base;
+        int victimWorth = Integer.MAX_VALUE;
+        boolean samePosition = false;
+
+        for (int i = 0; i < LONGS_PER_BUCKET; i += 2) {
+            long data = (long) WORDS.getOpaque(table, base + i + 1);
+            long check = (long) WORDS.getOpaque(table, base + i);
+            if (data == 0 || (check ^ data) == key) {
+                victim = base + i;
+                samePosition = data != 0;
+                if (samePosition && move == GameLogic.Move.NONE) {
+                    move = move(data); // keep the old best move
+                }
+                break;
+            }
+            int ageDistance = (currentAge - age(data)) & 0xFF;
+            int worth = depth(data) - 8 * ageDistance;
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = base + i;
+            }
+        }
+
+        if (!samePosition && (long) WORDS.getOpaque(table, victim + 1) != 0) {
+            collisions.increment();
+        }
+
+        long data = (move & 0xFFFFFL)
+            | ((score & 0xFFFFL) << SCORE_SHIFT)
+            | ((long) (Math.max(0, Math.min(depth, 255))) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) currentAge << AGE_SHIFT);
+        WORDS.setOpaque(table, victim, key ^ data);
+        WORDS.setOpaque(table, victim + 1, data);
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key >>> 32) & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    // --- Data word decoding ---
+
+    public static int move(long data) { return (int) (data & 0xFFFFF); }
+    public static int score(long data) { return (short) (data >>> SCORE_SHIFT); }
+    public static int depth(long data) { return (int) (data >>> DEPTH_SHIFT) & 0xFF; }
+    public static int bound(long data) { return (int) (data >>> BOUND_SHIFT) & 0x3; }
+    private static int age(long data) { return (int) (data >>> AGE_SHIFT) & 0xFF; }
+
+    // --- Statistics ---
+
+    public long getProbes() { return probes.sum(); }
+    public long getHits() { return hits.sum(); }
+
+    /**
+     * Stores that evicted a different position's entry.
+     */
+    public long getCollisions() { return collisions.sum(); }
+
+    public int getSizeMb() { return (int) ((long) table.length * 8 / (1024 * 1024)); }
+
+    /**
+     * Permille of sampled entries written during the current search generation.
+     */
+    public int getHashFull() {
+        int sampled = Math.min(1000, table.length / 2);
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = (long) WORDS.getOpaque(table, i * 2 + 1);
+            if (data != 0 && age(data) == age) used++;
+        }
+        return sampled == 0 ? 0 : used * 1000 / sampled;
+    }
+}